@@ -0,0 +1,115 @@
+package com.makemoney.qtfund.loadtest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 一个浏览器会话：独立的Cookie（登录后的JSESSIONID），请求带Accept-Encoding: gzip，
+ * 每次请求的延迟（含读取完整响应体）记录到EndpointStats
+ */
+final class DashboardClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+
+    private final URI baseUrl;
+
+    private final EndpointStats stats;
+
+    DashboardClient(URI baseUrl, EndpointStats stats, ExecutorService executor) {
+        this.baseUrl = baseUrl;
+        this.stats = stats;
+        this.client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * 表单登录，成功时返回true
+     */
+    boolean login(String username, String password) {
+        String form = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(password, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve("/login"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        HttpResponse<byte[]> response = send("POST /login", request, System.nanoTime());
+        if (response == null || response.statusCode() != 302) {
+            return false;
+        }
+        return response.headers().firstValue("Location").map(location -> !location.contains("error")).orElse(false);
+    }
+
+    /**
+     * GET请求，返回解压后的响应体；失败时返回null
+     */
+    byte[] get(String endpoint, String pathAndQuery) {
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve(pathAndQuery))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = send(endpoint, request, System.nanoTime());
+        return response != null && response.statusCode() == 200 ? decode(response) : null;
+    }
+
+    /**
+     * POST JSON，返回状态码，未得到响应时返回-1
+     * 延迟从startNanos（固定速率下的计划发送时间）开始计算，发送落后于计划时排队时间也计入延迟，
+     * 避免协调遗漏（coordinated omission）
+     */
+    int postJson(String endpoint, String path, byte[] body, long startNanos) {
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<byte[]> response = send(endpoint, request, startNanos);
+        return response != null ? response.statusCode() : -1;
+    }
+
+    private HttpResponse<byte[]> send(String endpoint, HttpRequest request, long startNanos) {
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            stats.record(endpoint, System.nanoTime() - startNanos, response.statusCode());
+            return response;
+        } catch (IOException e) {
+            stats.record(endpoint, System.nanoTime() - startNanos, -1);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static byte[] decode(HttpResponse<byte[]> response) {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("identity");
+        if (!"gzip".equalsIgnoreCase(encoding)) {
+            return response.body();
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.makemoney.qtfund.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 一个看板用户，按index.html的访问方式循环：
+ * 登录后打开/latest，连续查看若干合约的历史（并发的fetchHistory），切换日期（/search?targetDate），
+ * 每隔几轮刷新一次/latest；两次操作之间有随机的思考时间
+ */
+final class DashboardUser implements Runnable {
+
+    /**
+     * 每隔多少轮刷新一次/latest
+     */
+    private static final int LATEST_REFRESH_ROUNDS = 5;
+
+    private final LoadTestOptions options;
+
+    private final Workload workload;
+
+    private final EndpointStats stats;
+
+    private final ExecutorService executor;
+
+    private final long deadlineNanos;
+
+    DashboardUser(LoadTestOptions options, Workload workload, EndpointStats stats, ExecutorService executor,
+                  long deadlineNanos) {
+        this.options = options;
+        this.workload = workload;
+        this.stats = stats;
+        this.executor = executor;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public void run() {
+        DashboardClient client = new DashboardClient(options.baseUrl, stats, executor);
+        if (!client.login(options.username, options.password)) {
+            return;
+        }
+        client.get("GET /latest", Workload.LATEST);
+        try {
+            for (int round = 1; System.nanoTime() < deadlineNanos; round++) {
+                historyBurst(client);
+                think();
+                client.get("GET /search?targetDate", workload.randomDatePath());
+                think();
+                if (round % LATEST_REFRESH_ROUNDS == 0) {
+                    client.get("GET /latest", Workload.LATEST);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void historyBurst(DashboardClient client) throws InterruptedException {
+        List<Future<?>> requests = new ArrayList<>(options.historyBurst);
+        for (int i = 0; i < options.historyBurst; i++) {
+            String path = workload.randomHistoryPath();
+            requests.add(executor.submit(() -> client.get("GET /search?exchangeId&instrumentId", path)));
+        }
+        for (Future<?> request : requests) {
+            try {
+                request.get();
+            } catch (ExecutionException e) {
+                // 单个请求的失败已计入统计
+            }
+        }
+    }
+
+    private void think() throws InterruptedException {
+        long remainingMillis = (deadlineNanos - System.nanoTime()) / 1_000_000;
+        long thinkMillis = (long) (options.thinkTimeMillis * ThreadLocalRandom.current().nextDouble(0.5, 1.5));
+        Thread.sleep(Math.max(0, Math.min(thinkMillis, remainingMillis)));
+    }
+}
@@ -0,0 +1,74 @@
+package com.makemoney.qtfund.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按接口统计的延迟直方图（微秒）和错误数
+ */
+final class EndpointStats {
+
+    /**
+     * 可记录的最大延迟：1分钟
+     */
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+
+    /**
+     * 记录一次请求；status为-1表示请求未得到响应，429单独计为被拒绝
+     */
+    void record(String endpoint, long latencyNanos, int status) {
+        Endpoint stats = endpoints.computeIfAbsent(endpoint, key -> new Endpoint());
+        stats.histogram.recordValue(
+                Math.min(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)), MAX_LATENCY_MICROS));
+        if (status == 429) {
+            stats.rejected.increment();
+        } else if (status < 0 || status >= 400) {
+            stats.errors.increment();
+        }
+    }
+
+    /**
+     * 预热结束时清空统计
+     */
+    void reset() {
+        endpoints.values().forEach(Endpoint::reset);
+    }
+
+    Map<String, Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    static final class Endpoint {
+
+        private final Histogram histogram = new ConcurrentHistogram(1, MAX_LATENCY_MICROS, 3);
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder rejected = new LongAdder();
+
+        Histogram getHistogram() {
+            return histogram;
+        }
+
+        long getErrors() {
+            return errors.sum();
+        }
+
+        long getRejected() {
+            return rejected.sum();
+        }
+
+        private void reset() {
+            histogram.reset();
+            errors.reset();
+            rejected.reset();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.makemoney.qtfund.loadtest;
+
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 与看板访问同时进行的写入流：按固定速率向/api/stock-analysis/ingest提交批次，
+ * 每批为最新交易日中连续的若干行并随机修改score，429计为被拒绝
+ */
+final class IngestionStream implements Runnable {
+
+    private static final String INGEST = "/api/stock-analysis/ingest";
+
+    private final LoadTestOptions options;
+
+    private final Workload workload;
+
+    private final EndpointStats stats;
+
+    private final ExecutorService executor;
+
+    private final JsonMapper jsonMapper;
+
+    private final long deadlineNanos;
+
+    IngestionStream(LoadTestOptions options, Workload workload, EndpointStats stats, ExecutorService executor,
+                    JsonMapper jsonMapper, long deadlineNanos) {
+        this.options = options;
+        this.workload = workload;
+        this.stats = stats;
+        this.executor = executor;
+        this.jsonMapper = jsonMapper;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public void run() {
+        DashboardClient client = new DashboardClient(options.baseUrl, stats, executor);
+        if (!client.login(options.username, options.password)) {
+            return;
+        }
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.ingestRate);
+        long start = System.nanoTime();
+        try {
+            for (long i = 0; ; i++) {
+                long scheduled = start + i * intervalNanos;
+                if (scheduled >= deadlineNanos) {
+                    return;
+                }
+                long delay = scheduled - System.nanoTime();
+                if (delay > 0) {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                }
+                client.postJson("POST /ingest", INGEST, batch(i), scheduled);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] batch(long sequence) {
+        List<ObjectNode> rows = workload.getLatestRows();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ArrayNode batch = jsonMapper.createArrayNode();
+        int offset = (int) (sequence * options.ingestBatchSize % rows.size());
+        for (int i = 0; i < Math.min(options.ingestBatchSize, rows.size()); i++) {
+            ObjectNode row = rows.get((offset + i) % rows.size()).deepCopy();
+            row.put("score", Math.round(random.nextDouble(0, 100) * 100) / 100.0);
+            batch.add(row);
+        }
+        return jsonMapper.writeValueAsBytes(batch);
+    }
+}
@@ -0,0 +1,119 @@
+package com.makemoney.qtfund.loadtest;
+
+import org.HdrHistogram.Histogram;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QTFund端到端HTTP压测
+ * 模拟多个看板用户按index.html的方式访问，同时以固定速率写入数据；每个用户和每个请求都运行在虚拟线程上。
+ * 预热后统计每个接口的吞吐量和p50/p99/p999延迟（HdrHistogram），
+ * 结果输出到控制台、输出目录下的summary.csv和每个接口的.hgrm百分位分布文件
+ *
+ * 先启动MongoDB和应用并导入数据，再执行：
+ * QTFUND_PASSWORD=... mvn -f loadtest/pom.xml compile exec:java -Dexec.args="--base-url http://localhost:8080 --users 50"
+ * 参数：--base-url --username --password --users --warmup --duration --history-burst --think-time-ms
+ *      --ingest-rate --ingest-batch-size --output-dir，默认值见LoadTestOptions
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        JsonMapper jsonMapper = JsonMapper.builder().build();
+        EndpointStats stats = new EndpointStats();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            DashboardClient setupClient = new DashboardClient(options.baseUrl, new EndpointStats(), executor);
+            if (!setupClient.login(options.username, options.password)) {
+                System.err.println("登录失败: " + options.baseUrl);
+                System.exit(1);
+                return;
+            }
+            Workload workload = Workload.load(setupClient, jsonMapper);
+            System.out.printf("%d个合约, %d个交易日; %d个用户, 写入%.1f批/秒 x %d行; 预热%ds, 统计%ds%n",
+                    workload.getLatestRows().size(), workload.getDates().size(), options.users,
+                    options.ingestRate, options.ingestBatchSize, options.warmupSeconds, options.durationSeconds);
+
+            long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+            long deadline = measureStart + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < options.users; i++) {
+                tasks.add(executor.submit(new DashboardUser(options, workload, stats, executor, deadline)));
+            }
+            if (options.ingestRate > 0) {
+                tasks.add(executor.submit(new IngestionStream(options, workload, stats, executor, jsonMapper,
+                        deadline)));
+            }
+
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, measureStart - System.nanoTime()));
+            stats.reset();
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    System.err.println("压测任务失败: " + e.getCause());
+                }
+            }
+            report(stats, options.durationSeconds, options.outputDir);
+        }
+    }
+
+    private static void report(EndpointStats stats, int durationSeconds, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        List<String> csv = new ArrayList<>();
+        csv.add("endpoint,count,errors,rejected,throughput_per_s,p50_ms,p99_ms,p999_ms,max_ms");
+        System.out.printf("%n%-36s %8s %7s %8s %9s %9s %9s %9s %9s%n", "endpoint", "count", "errors", "rejected",
+                "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        for (Map.Entry<String, EndpointStats.Endpoint> entry : stats.getEndpoints().entrySet()) {
+            EndpointStats.Endpoint endpoint = entry.getValue();
+            Histogram histogram = endpoint.getHistogram().copy();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            double throughput = (double) histogram.getTotalCount() / durationSeconds;
+            double p50 = millis(histogram.getValueAtPercentile(50));
+            double p99 = millis(histogram.getValueAtPercentile(99));
+            double p999 = millis(histogram.getValueAtPercentile(99.9));
+            double max = millis(histogram.getMaxValue());
+            System.out.printf("%-36s %8d %7d %8d %9.1f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(),
+                    histogram.getTotalCount(), endpoint.getErrors(), endpoint.getRejected(), throughput,
+                    p50, p99, p999, max);
+            csv.add(String.format("%s,%d,%d,%d,%.2f,%.3f,%.3f,%.3f,%.3f", entry.getKey(), histogram.getTotalCount(),
+                    endpoint.getErrors(), endpoint.getRejected(), throughput, p50, p99, p999, max));
+
+            Path distribution = outputDir.resolve(entry.getKey().replaceAll("[^A-Za-z0-9]+", "_") + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(distribution))) {
+                // 直方图单位为微秒，输出为毫秒
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        Files.write(outputDir.resolve("summary.csv"), csv);
+        System.out.println("\n结果已写入 " + outputDir.toAbsolutePath());
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,95 @@
+package com.makemoney.qtfund.loadtest;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * 压测参数，命令行格式为 --name value
+ */
+final class LoadTestOptions {
+
+    /**
+     * 应用地址
+     */
+    URI baseUrl = URI.create("http://localhost:8080");
+
+    String username = "qtfund";
+
+    /**
+     * 登录密码，默认读取环境变量QTFUND_PASSWORD
+     */
+    String password = System.getenv("QTFUND_PASSWORD");
+
+    /**
+     * 同时在线的看板用户数
+     */
+    int users = 20;
+
+    /**
+     * 预热时间（秒），预热期间的请求不计入统计
+     */
+    int warmupSeconds = 10;
+
+    /**
+     * 统计时间（秒）
+     */
+    int durationSeconds = 60;
+
+    /**
+     * 每次连续查看的合约历史数
+     */
+    int historyBurst = 8;
+
+    /**
+     * 用户两次操作之间的间隔（毫秒）
+     */
+    long thinkTimeMillis = 1000;
+
+    /**
+     * 每秒提交的写入批次数，0表示不写入
+     */
+    double ingestRate = 5;
+
+    /**
+     * 每个写入批次的行数
+     */
+    int ingestBatchSize = 200;
+
+    /**
+     * 结果输出目录
+     */
+    Path outputDir = Path.of("target", "loadtest");
+
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("参数格式应为 --name value: " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i].substring(2)) {
+                case "base-url" -> options.baseUrl = URI.create(value.endsWith("/")
+                        ? value.substring(0, value.length() - 1) : value);
+                case "username" -> options.username = value;
+                case "password" -> options.password = value;
+                case "users" -> options.users = Integer.parseInt(value);
+                case "warmup" -> options.warmupSeconds = Integer.parseInt(value);
+                case "duration" -> options.durationSeconds = Integer.parseInt(value);
+                case "history-burst" -> options.historyBurst = Integer.parseInt(value);
+                case "think-time-ms" -> options.thinkTimeMillis = Long.parseLong(value);
+                case "ingest-rate" -> options.ingestRate = Double.parseDouble(value);
+                case "ingest-batch-size" -> options.ingestBatchSize = Integer.parseInt(value);
+                case "output-dir" -> options.outputDir = Path.of(value);
+                default -> throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+        if (options.password == null) {
+            throw new IllegalArgumentException("需要通过--password或环境变量QTFUND_PASSWORD指定登录密码");
+        }
+        if (options.users < 1 || options.durationSeconds < 1 || options.historyBurst < 0
+                || options.ingestRate < 0 || options.ingestBatchSize < 1) {
+            throw new IllegalArgumentException("参数取值无效");
+        }
+        return options;
+    }
+}
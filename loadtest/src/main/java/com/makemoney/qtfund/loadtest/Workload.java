@@ -0,0 +1,98 @@
+package com.makemoney.qtfund.loadtest;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 压测开始前从应用读取的数据：最新交易日的行（合约列表和写入流的模板）以及有数据的交易日
+ */
+final class Workload {
+
+    static final String LATEST = "/api/stock-analysis/latest";
+
+    static final String SEARCH = "/api/stock-analysis/search";
+
+    private final List<ObjectNode> latestRows;
+
+    private final List<String> dates;
+
+    private Workload(List<ObjectNode> latestRows, List<String> dates) {
+        this.latestRows = latestRows;
+        this.dates = dates;
+    }
+
+    /**
+     * 读取/latest，并用第一个合约的历史得到交易日列表；没有数据时抛出IllegalStateException
+     */
+    static Workload load(DashboardClient client, JsonMapper jsonMapper) {
+        byte[] latest = client.get("GET /latest", LATEST);
+        if (latest == null) {
+            throw new IllegalStateException("读取" + LATEST + "失败");
+        }
+        List<ObjectNode> rows = new ArrayList<>();
+        for (JsonNode row : jsonMapper.readTree(latest)) {
+            rows.add((ObjectNode) row);
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalStateException("应用中没有数据，请先导入数据");
+        }
+
+        ObjectNode first = rows.get(0);
+        byte[] history = client.get("GET /search?exchangeId&instrumentId",
+                historyPath(first.get("exchangeId").asString(), first.get("instrumentId").asString()));
+        Set<String> dates = new LinkedHashSet<>();
+        dates.add(localDate(first.get("targetDate").asString()));
+        if (history != null) {
+            for (JsonNode row : jsonMapper.readTree(history)) {
+                dates.add(localDate(row.get("targetDate").asString()));
+            }
+        }
+        return new Workload(List.copyOf(rows), List.copyOf(dates));
+    }
+
+    List<ObjectNode> getLatestRows() {
+        return latestRows;
+    }
+
+    List<String> getDates() {
+        return dates;
+    }
+
+    /**
+     * 随机一个合约的历史查询路径，与index.html中fetchHistory的请求相同
+     */
+    String randomHistoryPath() {
+        ObjectNode row = latestRows.get(ThreadLocalRandom.current().nextInt(latestRows.size()));
+        return historyPath(row.get("exchangeId").asString(), row.get("instrumentId").asString());
+    }
+
+    /**
+     * 随机一个交易日的查询路径，与index.html中切换日期时的请求相同
+     */
+    String randomDatePath() {
+        return SEARCH + "?targetDate=" + dates.get(ThreadLocalRandom.current().nextInt(dates.size()));
+    }
+
+    private static String historyPath(String exchangeId, String instrumentId) {
+        return SEARCH + "?exchangeId=" + URLEncoder.encode(exchangeId, StandardCharsets.UTF_8)
+                + "&instrumentId=" + URLEncoder.encode(instrumentId, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 响应中的ISO时间转换为本地日期yyyy-MM-dd，与前端formatDateSimple一致
+     */
+    private static String localDate(String isoTime) {
+        return Instant.parse(isoTime).atZone(ZoneId.systemDefault()).toLocalDate().toString();
+    }
+}
@@ -0,0 +1,101 @@
+package com.makemoney.qtfund.benchmark;
+
+import com.makemoney.qtfund.dto.IndicatorSeries;
+import com.makemoney.qtfund.dto.IndicatorSnapshot;
+import com.makemoney.qtfund.dto.InstrumentHistory;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.service.IndicatorService;
+import com.makemoney.qtfund.service.RankingPipeline;
+import com.makemoney.qtfund.service.StockAnalysisResultService;
+import com.makemoney.qtfund.util.HistoryDownsampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存中的排名、均线和降采样计算，数据加载到内存索引后不再访问MongoDB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    private BenchmarkEnvironment environment;
+
+    private IndicatorService indicatorService;
+
+    private String instrumentId;
+
+    private double[] scores;
+
+    private InstrumentHistory history;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = BenchmarkEnvironment.start();
+        indicatorService = environment.getBean(IndicatorService.class);
+        StockAnalysisResultService service = environment.getBean(StockAnalysisResultService.class);
+        instrumentId = BenchmarkEnvironment.instrumentId(BenchmarkEnvironment.INSTRUMENTS / 2);
+
+        List<StockAnalysisResult> day = BenchmarkEnvironment.day(BenchmarkEnvironment.INSTRUMENTS, 0);
+        scores = new double[day.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = day.get(i).getScore();
+        }
+        history = service.getHistory(BenchmarkEnvironment.EXCHANGE_ID, instrumentId, null, null);
+        // 预先加载全部合约的列式历史
+        indicatorService.getUniverse(null, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    /**
+     * 一个交易日全部合约的竞争排名
+     */
+    @Benchmark
+    public int[] rankDay() {
+        return RankingPipeline.rank(scores);
+    }
+
+    /**
+     * 单个合约的MA5/10/20/60序列
+     */
+    @Benchmark
+    public IndicatorSeries instrumentIndicators() {
+        return indicatorService.getIndicators(BenchmarkEnvironment.EXCHANGE_ID, instrumentId, null, null);
+    }
+
+    /**
+     * 最新交易日全市场的均线状态
+     */
+    @Benchmark
+    public List<IndicatorSnapshot> universe() {
+        return indicatorService.getUniverse(null, false);
+    }
+
+    /**
+     * 单个合约历史的LTTB降采样，保留四分之一的点
+     */
+    @Benchmark
+    public InstrumentHistory downsample() {
+        return HistoryDownsampler.lttb(history, Math.max(3, BenchmarkEnvironment.DAYS / 4));
+    }
+}
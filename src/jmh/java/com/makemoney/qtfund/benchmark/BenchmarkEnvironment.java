@@ -0,0 +1,132 @@
+package com.makemoney.qtfund.benchmark;
+
+import com.makemoney.qtfund.QtFundApplication;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.service.StockAnalysisResultService;
+import com.makemoney.qtfund.util.TradingDates;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.ServerVersion;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试的运行环境：启动应用上下文并写入合成数据
+ * 默认使用进程内的mongo-java-server作为MongoDB替身；指定 -Djmh.mongo.host/-Djmh.mongo.port 时连接本地MongoDB，
+ * 使用单独的qtfund_jmh库，写入前会清空该库中的数据
+ */
+public final class BenchmarkEnvironment implements AutoCloseable {
+
+    public static final String EXCHANGE_ID = "BM";
+
+    private static final String DATABASE = "qtfund_jmh";
+
+    /**
+     * 合成数据的合约数和交易日数，可用 -Djmh.instruments/-Djmh.days 调整
+     */
+    public static final int INSTRUMENTS = Integer.getInteger("jmh.instruments", 1000);
+
+    public static final int DAYS = Integer.getInteger("jmh.days", 60);
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 2);
+
+    private final MongoServer mongoServer;
+
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkEnvironment(MongoServer mongoServer, ConfigurableApplicationContext context) {
+        this.mongoServer = mongoServer;
+        this.context = context;
+    }
+
+    /**
+     * 启动应用（HTTP使用随机端口）并写入INSTRUMENTS * DAYS行数据
+     */
+    public static BenchmarkEnvironment start() {
+        String host = System.getProperty("jmh.mongo.host");
+        int port = Integer.getInteger("jmh.mongo.port", 27017);
+        MongoServer mongoServer = null;
+        if (host == null) {
+            mongoServer = new MongoServer(new MemoryBackend().version(ServerVersion.MONGO_5_0));
+            InetSocketAddress address = mongoServer.bind();
+            host = address.getHostString();
+            port = address.getPort();
+        }
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(QtFundApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.mongodb.host=" + host,
+                        "spring.mongodb.port=" + port,
+                        "spring.mongodb.database=" + DATABASE,
+                        "qtfund.index.explain-on-startup=false",
+                        "logging.level.root=WARN")
+                .run();
+        BenchmarkEnvironment environment = new BenchmarkEnvironment(mongoServer, context);
+        // 清空前确认连的是基准测试库，配置未生效时不能清空默认库
+        String database = environment.getBean(MongoTemplate.class).getDb().getName();
+        if (!DATABASE.equals(database)) {
+            environment.close();
+            throw new IllegalStateException("基准测试应使用" + DATABASE + "库，实际连接的是" + database);
+        }
+        StockAnalysisResultService service = environment.getBean(StockAnalysisResultService.class);
+        service.deleteAll();
+        List<StockAnalysisResult> rows = new ArrayList<>(INSTRUMENTS * DAYS);
+        for (int day = 0; day < DAYS; day++) {
+            rows.addAll(day(INSTRUMENTS, day));
+        }
+        service.saveOrUpdateAll(rows);
+        return environment;
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * 第day个交易日（从0开始）的合成数据，相同参数生成的数据相同
+     */
+    public static List<StockAnalysisResult> day(int instruments, int day) {
+        Random random = new Random(day);
+        Date targetDate = date(day);
+        List<StockAnalysisResult> rows = new ArrayList<>(instruments);
+        for (int i = 0; i < instruments; i++) {
+            StockAnalysisResult row = new StockAnalysisResult();
+            row.setExchangeId(EXCHANGE_ID);
+            row.setInstrumentId(instrumentId(i));
+            row.setInstrumentName("基准ETF" + i);
+            row.setTargetDate(targetDate);
+            row.setClose(1.0 + i % 50 * 0.1 + day * 0.002 + random.nextDouble() * 0.05);
+            row.setAmount(1_000_000.0 + random.nextInt(50_000_000));
+            row.setScore(Math.round(random.nextDouble() * 10000) / 100.0);
+            row.setRanking(i + 1);
+            row.setScoreChange(random.nextDouble() * 4 - 2);
+            row.setRankingChange(random.nextInt(21) - 10);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    public static Date date(int day) {
+        return Date.from(FIRST_DAY.plusDays(day).atStartOfDay(TradingDates.EXCHANGE_ZONE).toInstant());
+    }
+
+    public static String instrumentId(int index) {
+        return String.format("%06d", index);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (mongoServer != null) {
+            mongoServer.shutdownNow();
+        }
+    }
+}
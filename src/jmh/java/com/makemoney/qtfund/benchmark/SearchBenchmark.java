@@ -0,0 +1,118 @@
+package com.makemoney.qtfund.benchmark;
+
+import com.makemoney.qtfund.dto.CursorPage;
+import com.makemoney.qtfund.dto.StockAnalysisQuery;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.service.EncodedResponseCache;
+import com.makemoney.qtfund.service.StockAnalysisResultService;
+import com.makemoney.qtfund.util.StockAnalysisFields;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /search各分支对应的Service调用
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private BenchmarkEnvironment environment;
+
+    private StockAnalysisResultService service;
+
+    private Date targetDate;
+
+    private String instrumentId;
+
+    private StockAnalysisQuery filtered;
+
+    private StockAnalysisQuery byName;
+
+    private List<String> fields;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = BenchmarkEnvironment.start();
+        service = environment.getBean(StockAnalysisResultService.class);
+        targetDate = BenchmarkEnvironment.date(BenchmarkEnvironment.DAYS / 2);
+        instrumentId = BenchmarkEnvironment.instrumentId(BenchmarkEnvironment.INSTRUMENTS / 2);
+
+        filtered = new StockAnalysisQuery();
+        filtered.setTargetDate(targetDate);
+        filtered.setMinRanking(1);
+        filtered.setMaxRanking(200);
+        filtered.setMinAmount(1e7);
+        filtered.setSort("-score");
+        filtered.setLimit(50);
+
+        byName = new StockAnalysisQuery();
+        byName.setTargetDate(targetDate);
+        byName.setName("ETF12");
+
+        fields = StockAnalysisFields.parse("instrumentName,score,ranking");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    /**
+     * GET /search?targetDate：预序列化缓存
+     */
+    @Benchmark
+    public EncodedResponseCache.EncodedBody targetDateEncoded() {
+        return service.getEncodedByTargetDate(targetDate);
+    }
+
+    /**
+     * GET /search?exchangeId&instrumentId：单个合约的全部历史
+     */
+    @Benchmark
+    public List<StockAnalysisResult> instrumentHistory() {
+        return service.findByExchangeIdAndInstrumentId(BenchmarkEnvironment.EXCHANGE_ID, instrumentId);
+    }
+
+    /**
+     * GET /search：日期+排名+成交额过滤，按score降序取前50
+     */
+    @Benchmark
+    public List<Map<String, Object>> filteredTopN() {
+        return service.search(filtered, fields);
+    }
+
+    /**
+     * GET /search?name：名称模糊匹配
+     */
+    @Benchmark
+    public List<Map<String, Object>> nameMatch() {
+        return service.search(byName, fields);
+    }
+
+    /**
+     * GET /search无条件：第一页
+     */
+    @Benchmark
+    public CursorPage firstPage() {
+        return service.findPage(null, StockAnalysisResultService.DEFAULT_PAGE_SIZE, fields);
+    }
+}
@@ -0,0 +1,69 @@
+package com.makemoney.qtfund.benchmark;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.util.StockAnalysisFields;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一整个交易日的StockAnalysisResult的Jackson序列化耗时，不需要MongoDB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"1000", "5000"})
+    private int rowsPerDay;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private List<StockAnalysisResult> rows;
+
+    private List<String> fields;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rows = BenchmarkEnvironment.day(rowsPerDay, 0);
+        fields = StockAnalysisFields.parse("exchangeId,instrumentId,instrumentName,score,ranking");
+    }
+
+    /**
+     * /latest、/search?targetDate的响应体
+     */
+    @Benchmark
+    public byte[] fullDay() {
+        return jsonMapper.writeValueAsBytes(rows);
+    }
+
+    /**
+     * 带fields参数的/search响应体：先投影再序列化
+     */
+    @Benchmark
+    public byte[] projectedDay() {
+        List<Map<String, Object>> items = new ArrayList<>(rows.size());
+        for (StockAnalysisResult row : rows) {
+            items.add(StockAnalysisFields.project(row, fields));
+        }
+        return jsonMapper.writeValueAsBytes(items);
+    }
+}
@@ -0,0 +1,68 @@
+package com.makemoney.qtfund.benchmark;
+
+import com.makemoney.qtfund.dto.BatchSaveResult;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.service.StockAnalysisResultService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 逐行saveOrUpdate与批量bulk upsert写入同一批行的耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private BenchmarkEnvironment environment;
+
+    private StockAnalysisResultService service;
+
+    private List<StockAnalysisResult> rows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = BenchmarkEnvironment.start();
+        service = environment.getBean(StockAnalysisResultService.class);
+        // 写入已有交易日之后的一天，覆盖插入和更新两种情况
+        rows = BenchmarkEnvironment.day(batchSize, BenchmarkEnvironment.DAYS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public void saveOrUpdateEach(Blackhole blackhole) {
+        for (StockAnalysisResult row : rows) {
+            blackhole.consume(service.saveOrUpdate(row));
+        }
+    }
+
+    @Benchmark
+    public BatchSaveResult bulkUpsert() {
+        return service.saveOrUpdateAll(rows);
+    }
+}
@@ -0,0 +1,49 @@
+package com.makemoney.qtfund.config;
+
+import com.makemoney.qtfund.service.SnapshotEventBroadcaster;
+import com.makemoney.qtfund.service.StockAnalysisIngestService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.mongodb.autoconfigure.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 数据路径指标，通过/actuator/prometheus导出
+ * Spring Boot自带：http.server.requests（每个接口）、spring.data.repository.invocations（每个Repository方法）、
+ * mongodb.driver.commands和mongodb.driver.pool.*；这里补充文档数、取连接等待时间、写入队列深度和SSE连接数。
+ * 各缓存的命中/未命中计数见CacheMeters
+ */
+@Configuration
+public class DataPathMetricsConfig {
+
+    @Bean
+    public MongoDataPathMetrics mongoDataPathMetrics(MeterRegistry registry) {
+        return new MongoDataPathMetrics(registry);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoDataPathMetricsCustomizer(MongoDataPathMetrics metrics) {
+        return builder -> builder
+                .addCommandListener(metrics)
+                .applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(metrics));
+    }
+
+    @Bean
+    public MeterBinder ingestQueueMetrics(StockAnalysisIngestService ingestService) {
+        return registry -> Gauge
+                .builder("qtfund.ingest.queue.depth", ingestService, StockAnalysisIngestService::getPendingCount)
+                .description("异步写入队列中待写的行数")
+                .baseUnit("rows")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder sseConnectionMetrics(SnapshotEventBroadcaster broadcaster) {
+        return registry -> Gauge
+                .builder("qtfund.sse.connections", broadcaster, SnapshotEventBroadcaster::getConnectionCount)
+                .description("当前SSE连接数")
+                .register(registry);
+    }
+}
@@ -0,0 +1,32 @@
+package com.makemoney.qtfund.config;
+
+import com.makemoney.qtfund.util.TradingDates;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.Formatter;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.datetime.DateFormatter;
+import org.springframework.format.datetime.DateTimeFormatAnnotationFormatterFactory;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * 接口参数中@DateTimeFormat标注的Date按交易所时区解析，与TradingDates的交易日换算一致，不依赖主机时区
+ */
+@Configuration
+public class DateFormatConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addFormatterForFieldAnnotation(new DateTimeFormatAnnotationFormatterFactory() {
+            @Override
+            protected Formatter<Date> getFormatter(DateTimeFormat annotation, Class<?> fieldType) {
+                DateFormatter formatter = (DateFormatter) super.getFormatter(annotation, fieldType);
+                formatter.setTimeZone(TimeZone.getTimeZone(TradingDates.EXCHANGE_ZONE));
+                return formatter;
+            }
+        });
+    }
+}
@@ -0,0 +1,123 @@
+package com.makemoney.qtfund.config;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.mongodb.autoconfigure.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.mongodb.autoconfigure.ReactiveMongoClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求执行模式与MongoDB连接池配置
+ * spring.threads.virtual.enabled=true时Tomcat请求、异步请求、@Async/调度任务和本应用的后台线程都使用虚拟线程，
+ * 此时请求并发不再受Tomcat线程数限制，实际访问MongoDB的并发由连接池大小决定，
+ * 取不到连接的请求最多等待max-wait-ms后失败，而不是无限排队。
+ * 阻塞客户端（MongoTemplate/Repository）和响应式客户端（/api/reactive）各有一个连接池，
+ * 两者合计不超过max-size：响应式客户端占reactive-max-size个，其余归阻塞客户端
+ */
+@Configuration
+public class ExecutionModeConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionModeConfig.class);
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${server.tomcat.threads.max:200}")
+    private int tomcatMaxThreads;
+
+    /**
+     * 每个应用实例到MongoDB的总连接数上限，由两个客户端分摊
+     */
+    @Value("${qtfund.mongo.pool.max-size:100}")
+    private int poolMaxSize;
+
+    /**
+     * 其中响应式客户端的最大连接数
+     */
+    @Value("${qtfund.mongo.pool.reactive-max-size:20}")
+    private int reactivePoolMaxSize;
+
+    /**
+     * 连接池最小连接数
+     */
+    @Value("${qtfund.mongo.pool.min-size:0}")
+    private int poolMinSize;
+
+    /**
+     * 取连接的最长等待时间
+     */
+    @Value("${qtfund.mongo.pool.max-wait-ms:2000}")
+    private long poolMaxWaitMillis;
+
+    /**
+     * 同时建立中的连接数上限，避免流量突增时同时建立大量连接
+     */
+    @Value("${qtfund.mongo.pool.max-connecting:2}")
+    private int poolMaxConnecting;
+
+    /**
+     * 应用于两个客户端，连接池大小为阻塞客户端的份额，响应式客户端随后再覆盖为自己的份额
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoPoolCustomizer() {
+        return poolSize(blockingPoolMaxSize());
+    }
+
+    /**
+     * 替代自动配置的响应式客户端：使用相同的连接设置和customizer，最后把连接池大小改为reactive-max-size
+     */
+    @Bean
+    public MongoClient reactiveStreamsMongoClient(ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers,
+                                                 MongoClientSettings settings) {
+        List<MongoClientSettingsBuilderCustomizer> ordered = new ArrayList<>(customizers.orderedStream().toList());
+        ordered.add(poolSize(reactivePoolMaxSize));
+        return new ReactiveMongoClientFactory(ordered).createMongoClient(settings);
+    }
+
+    private MongoClientSettingsBuilderCustomizer poolSize(int maxSize) {
+        return builder -> builder.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(maxSize)
+                .minSize(Math.min(poolMinSize, maxSize))
+                .maxWaitTime(poolMaxWaitMillis, TimeUnit.MILLISECONDS)
+                .maxConnecting(poolMaxConnecting));
+    }
+
+    /**
+     * 阻塞客户端的份额，reactive-max-size不小于1且小于max-size，否则抛出IllegalStateException
+     */
+    private int blockingPoolMaxSize() {
+        if (reactivePoolMaxSize < 1 || reactivePoolMaxSize >= poolMaxSize) {
+            throw new IllegalStateException("qtfund.mongo.pool.reactive-max-size应不小于1且小于"
+                    + "qtfund.mongo.pool.max-size(" + poolMaxSize + ")");
+        }
+        return poolMaxSize - reactivePoolMaxSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        int blockingMaxSize = blockingPoolMaxSize();
+        if (virtualThreads) {
+            log.info("请求执行模式: 虚拟线程, MongoDB连接池 合计maxSize={}（阻塞{}，响应式{}），maxWait={}ms",
+                    poolMaxSize, blockingMaxSize, reactivePoolMaxSize, poolMaxWaitMillis);
+            return;
+        }
+        log.info("请求执行模式: 平台线程, Tomcat最大线程数={}, MongoDB连接池 合计maxSize={}（阻塞{}，响应式{}）",
+                tomcatMaxThreads, poolMaxSize, blockingMaxSize, reactivePoolMaxSize);
+        if (tomcatMaxThreads < blockingMaxSize) {
+            log.warn("Tomcat最大线程数{}小于阻塞客户端连接池大小{}，连接池无法用满，并发受线程数限制；"
+                    + "可调大server.tomcat.threads.max或启用spring.threads.virtual.enabled", tomcatMaxThreads,
+                    blockingMaxSize);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.makemoney.qtfund.config;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 补充Spring Boot自带的MongoDB指标（mongodb.driver.commands命令耗时、mongodb.driver.pool.*连接池大小）：
+ * qtfund.mongodb.returned 每次find/aggregate/getMore返回的文档数，按命令和集合区分；
+ * qtfund.mongodb.pool.checkout 从连接池取连接的等待时间，取连接失败（超时等）时outcome为失败原因
+ */
+public class MongoDataPathMetrics implements CommandListener, ConnectionPoolListener {
+
+    private final MeterRegistry registry;
+
+    /**
+     * requestId -> 集合名，命令结束时取出；结束事件中不带命令文档
+     */
+    private final Map<Integer, String> collections = new ConcurrentHashMap<>();
+
+    private final Map<String, DistributionSummary> documents = new ConcurrentHashMap<>();
+
+    private final Timer checkout;
+
+    public MongoDataPathMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.checkout = checkoutTimer(registry, "success");
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (returnsDocuments(event.getCommandName())) {
+            collections.put(event.getRequestId(), collection(event.getCommand(), event.getCommandName()));
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        String collection = collections.remove(event.getRequestId());
+        if (collection == null) {
+            return;
+        }
+        BsonDocument cursor = event.getResponse().getDocument("cursor", null);
+        if (cursor == null) {
+            return;
+        }
+        BsonValue batch = cursor.containsKey("firstBatch") ? cursor.get("firstBatch") : cursor.get("nextBatch");
+        if (batch != null && batch.isArray()) {
+            documents.computeIfAbsent(event.getCommandName() + ":" + collection,
+                    key -> DistributionSummary.builder("qtfund.mongodb.returned")
+                            .description("每次查询命令返回的文档数")
+                            .baseUnit("documents")
+                            .tag("command", event.getCommandName())
+                            .tag("collection", collection)
+                            .publishPercentileHistogram()
+                            .register(registry))
+                    .record(batch.asArray().size());
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        collections.remove(event.getRequestId());
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkout.record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        checkoutTimer(registry, event.getReason().name().toLowerCase(Locale.ROOT))
+                .record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer checkoutTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("qtfund.mongodb.pool.checkout")
+                .description("从MongoDB连接池取连接的等待时间")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static boolean returnsDocuments(String commandName) {
+        return "find".equals(commandName) || "aggregate".equals(commandName) || "getMore".equals(commandName);
+    }
+
+    /**
+     * find/aggregate的集合名是命令字段的值，getMore的集合名在collection字段中
+     */
+    private static String collection(BsonDocument command, String commandName) {
+        BsonValue value = command.get("getMore".equals(commandName) ? "collection" : commandName);
+        return value != null && value.isString() ? value.asString().getValue() : "unknown";
+    }
+}
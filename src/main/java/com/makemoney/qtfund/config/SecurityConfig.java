@@ -31,6 +31,8 @@ public class SecurityConfig {
             .csrf(AbstractHttpConfigurer::disable) // 暂时禁用 CSRF，方便开发调试，生产环境建议开启
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/login.html", "/login", "/css/**", "/js/**", "/images/**").permitAll()
+                // 供Prometheus抓取和健康检查，不需要登录；生产环境应通过网络隔离或management.server.port限制访问
+                .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                 .anyRequest().authenticated()
             )
             .formLogin(form -> form
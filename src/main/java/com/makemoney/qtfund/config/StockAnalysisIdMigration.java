@@ -0,0 +1,127 @@
+package com.makemoney.qtfund.config;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.util.StockAnalysisIds;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * stock_analysis_result 的_id迁移
+ * 把_id为ObjectId或带时刻后缀（如 SZ:159206:20240115T093000000）的旧文档改写为由自然键生成的_id。
+ * 迁移前先删除不再需要的唯一索引uk_exchange_instrument_date，使新旧_id可以同时存在；
+ * 每个文档先写入新_id再删除旧_id，中断后重新启动会重写并继续迁移剩余文档，不会丢失数据
+ */
+@Component
+@Order(1)
+public class StockAnalysisIdMigration implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StockAnalysisIdMigration.class);
+
+    private static final String LEGACY_UNIQUE_INDEX = "uk_exchange_instrument_date";
+
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * 旧版本对非零点的targetDate在_id中附加的时刻后缀
+     */
+    private static final String TIME_SUFFIXED_ID = "^[^:]+:[^:]+:\\d{8}T";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${qtfund.id-migration.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public void run(String... args) {
+        if (enabled) {
+            migrate();
+        }
+    }
+
+    /**
+     * 迁移所有旧_id的文档，返回迁移的文档数
+     */
+    public long migrate() {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(
+                mongoTemplate.getCollectionName(StockAnalysisResult.class));
+        dropLegacyIndex(collection);
+        long migrated = 0;
+        long skipped = 0;
+        List<WriteModel<Document>> batch = new ArrayList<>();
+        try (MongoCursor<Document> cursor = collection.find(Filters.or(
+                        Filters.type("_id", BsonType.OBJECT_ID), Filters.regex("_id", TIME_SUFFIXED_ID)))
+                .batchSize(BATCH_SIZE).iterator()) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                String exchangeId = document.getString("exchange_id");
+                String instrumentId = document.getString("instrument_id");
+                Date targetDate = document.getDate("target_date");
+                if (exchangeId == null || instrumentId == null || targetDate == null) {
+                    // 自然键不完整的文档保留原_id
+                    skipped++;
+                    continue;
+                }
+                Object legacyId = document.get("_id");
+                String id = StockAnalysisIds.of(exchangeId, instrumentId, targetDate);
+                document.put("_id", id);
+                batch.add(new ReplaceOneModel<>(Filters.eq("_id", id), document, new ReplaceOptions().upsert(true)));
+                batch.add(new DeleteOneModel<>(Filters.eq("_id", legacyId)));
+                if (batch.size() >= BATCH_SIZE * 2) {
+                    migrated += write(collection, batch);
+                }
+            }
+        }
+        migrated += write(collection, batch);
+
+        if (migrated > 0 || skipped > 0) {
+            log.info("_id迁移完成: 迁移 {} 条，自然键不完整跳过 {} 条", migrated, skipped);
+        }
+        return migrated;
+    }
+
+    private static long write(MongoCollection<Document> collection, List<WriteModel<Document>> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            // 有序执行，保证每个文档的新_id写入成功后才删除旧_id
+            collection.bulkWrite(batch);
+            return batch.size() / 2;
+        } catch (MongoBulkWriteException e) {
+            throw new IllegalStateException("_id迁移失败: " + e.getMessage(), e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private static void dropLegacyIndex(MongoCollection<Document> collection) {
+        for (Document index : collection.listIndexes()) {
+            if (LEGACY_UNIQUE_INDEX.equals(index.getString("name"))) {
+                collection.dropIndex(LEGACY_UNIQUE_INDEX);
+                log.info("已删除索引 {}，自然键的唯一性由_id保证", LEGACY_UNIQUE_INDEX);
+                return;
+            }
+        }
+    }
+}
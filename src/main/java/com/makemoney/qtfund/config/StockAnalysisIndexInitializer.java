@@ -0,0 +1,182 @@
+package com.makemoney.qtfund.config;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.service.StockAnalysisResultService;
+import com.makemoney.qtfund.util.StockAnalysisIds;
+import com.makemoney.qtfund.util.TradingDates;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * stock_analysis_result 索引初始化
+ * 启动时按实体上的@CompoundIndex补建缺失的索引，并对Repository中的每个查询执行explain，
+ * 报告其是否走索引
+ */
+@Component
+@Order(0)
+public class StockAnalysisIndexInitializer implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StockAnalysisIndexInitializer.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${qtfund.index.explain-on-startup:true}")
+    private boolean explainOnStartup;
+
+    @Override
+    public void run(String... args) {
+        ensureIndexes();
+        if (explainOnStartup) {
+            for (Map.Entry<String, String> entry : explainRepositoryQueries().entrySet()) {
+                log.info("查询 {} -> {}", entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 创建缺失的索引，返回本次新建的索引名
+     */
+    public List<String> ensureIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(StockAnalysisResult.class);
+        Set<String> existing = indexOps.getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toSet());
+
+        List<String> created = new ArrayList<>();
+        IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        for (IndexDefinition definition : resolver.resolveIndexFor(StockAnalysisResult.class)) {
+            String name = (String) definition.getIndexOptions().get("name");
+            if (existing.contains(name)) {
+                continue;
+            }
+            try {
+                indexOps.createIndex(definition);
+                created.add(name);
+                log.info("已创建索引 {} {}", name, definition.getIndexKeys().toJson());
+            } catch (RuntimeException e) {
+                // 唯一索引在存在重复数据时会创建失败，需先清理重复记录
+                log.error("创建索引 {} 失败: {}", name, e.getMessage());
+            }
+        }
+        return created;
+    }
+
+    /**
+     * 对Repository中的各个查询执行explain，返回 查询名 -> 执行计划摘要
+     */
+    public Map<String, String> explainRepositoryQueries() {
+        int sampleDate = TradingDates.toDateKey(new Date());
+        Map<String, Document> queries = new LinkedHashMap<>();
+        queries.put("findByExchangeIdAndInstrumentId", find(
+                new Document("exchange_id", "SZ").append("instrument_id", "159206"), null));
+        queries.put("findByTradeDate", find(new Document("trade_date", sampleDate), null));
+        queries.put("findById", find(
+                new Document("_id", StockAnalysisIds.of("SZ", "159206", TradingDates.toDate(sampleDate))), null));
+        queries.put("findByExchangeIdAndInstrumentIdAndTradeDateRange", find(
+                new Document("exchange_id", "SZ").append("instrument_id", "159206")
+                        .append("trade_date", new Document("$gte", sampleDate).append("$lte", sampleDate)),
+                new Document("trade_date", 1)));
+        queries.put("findByTradeDateRange", find(
+                new Document("trade_date", new Document("$gte", sampleDate).append("$lte", sampleDate)), null));
+        queries.put("findByRankingBetween", find(
+                new Document("ranking", new Document("$gt", 1).append("$lt", 100)), null));
+        queries.put("findByScoreBetween", find(
+                new Document("score", new Document("$gt", 0.0).append("$lt", 100.0)), null));
+        queries.put("findFirstByOrderByTradeDateDesc", find(new Document(), new Document("trade_date", -1))
+                .append("limit", 1));
+        queries.put("search", find(new Document("trade_date", sampleDate)
+                        .append("ranking", new Document("$gte", 1).append("$lte", 50)),
+                new Document("ranking", 1).append("trade_date", 1).append("exchange_id", 1)
+                        .append("instrument_id", 1))
+                .append("limit", 20));
+        queries.put("findPage", find(new Document("trade_date", new Document("$gte", sampleDate)),
+                new Document("trade_date", 1).append("exchange_id", 1).append("instrument_id", 1))
+                .append("limit", StockAnalysisResultService.DEFAULT_PAGE_SIZE + 1));
+
+        Map<String, String> report = new LinkedHashMap<>();
+        for (Map.Entry<String, Document> entry : queries.entrySet()) {
+            report.put(entry.getKey(), explain(entry.getValue()));
+        }
+        return report;
+    }
+
+    private Document find(Document filter, Document sort) {
+        Document find = new Document("find", mongoTemplate.getCollectionName(StockAnalysisResult.class))
+                .append("filter", filter);
+        if (sort != null) {
+            find.append("sort", sort);
+        }
+        return find;
+    }
+
+    private String explain(Document find) {
+        try {
+            Document result = mongoTemplate.getDb().runCommand(
+                    new Document("explain", find).append("verbosity", "queryPlanner"));
+            Document queryPlanner = result.get("queryPlanner", Document.class);
+            Document winningPlan = queryPlanner != null ? queryPlanner.get("winningPlan", Document.class) : null;
+            if (winningPlan == null) {
+                return "无法解析执行计划";
+            }
+            List<String> stages = new ArrayList<>();
+            collectStages(winningPlan, stages);
+            String plan = String.join(" <- ", stages);
+            if (stages.contains("COLLSCAN")) {
+                return "未走索引(全表扫描): " + plan;
+            }
+            if (stages.contains("SORT")) {
+                return "走索引但需内存排序: " + plan;
+            }
+            return "走索引: " + plan;
+        } catch (RuntimeException e) {
+            return "explain失败: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 递归收集执行计划中的stage，IXSCAN附带索引名
+     */
+    private static void collectStages(Document plan, List<String> stages) {
+        // 新版本的SBE计划把经典计划放在queryPlan下
+        Document queryPlan = plan.get("queryPlan", Document.class);
+        if (queryPlan != null) {
+            collectStages(queryPlan, stages);
+            return;
+        }
+        String stage = plan.getString("stage");
+        if (stage != null) {
+            String indexName = plan.getString("indexName");
+            stages.add(indexName != null ? stage + "(" + indexName + ")" : stage);
+        }
+        Document inputStage = plan.get("inputStage", Document.class);
+        if (inputStage != null) {
+            collectStages(inputStage, stages);
+        }
+        List<Document> inputStages = plan.getList("inputStages", Document.class);
+        if (inputStages != null) {
+            for (Document child : inputStages) {
+                collectStages(child, stages);
+            }
+        }
+    }
+}
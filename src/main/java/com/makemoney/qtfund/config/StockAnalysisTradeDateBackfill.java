@@ -0,0 +1,107 @@
+package com.makemoney.qtfund.config;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.util.TradingDates;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * stock_analysis_result 的trade_date回填
+ * 为缺少trade_date的文档按target_date计算yyyyMMdd（与TradingDates一致，使用JVM默认时区），
+ * 回填后删除已被trade_date索引取代的target_date索引
+ */
+@Component
+@Order(2)
+public class StockAnalysisTradeDateBackfill implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StockAnalysisTradeDateBackfill.class);
+
+    private static final List<String> LEGACY_INDEXES = List.of(
+            "idx_date_ranking", "idx_date_score", "idx_date_exchange_instrument", "idx_exchange_instrument_date");
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${qtfund.trade-date-backfill.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public void run(String... args) {
+        if (enabled) {
+            backfill();
+        }
+    }
+
+    /**
+     * 回填缺少trade_date的文档，返回回填的文档数
+     */
+    public long backfill() {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(
+                mongoTemplate.getCollectionName(StockAnalysisResult.class));
+        long updated = 0;
+        List<WriteModel<Document>> batch = new ArrayList<>();
+        try (MongoCursor<Document> cursor = collection
+                .find(Filters.and(Filters.exists("trade_date", false), Filters.exists("target_date")))
+                .projection(Projections.include("target_date"))
+                .batchSize(BATCH_SIZE).iterator()) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                Date targetDate = document.getDate("target_date");
+                if (targetDate == null) {
+                    continue;
+                }
+                batch.add(new UpdateOneModel<>(Filters.eq("_id", document.get("_id")),
+                        Updates.set("trade_date", TradingDates.toDateKey(targetDate))));
+                if (batch.size() >= BATCH_SIZE) {
+                    updated += write(collection, batch);
+                }
+            }
+        }
+        updated += write(collection, batch);
+
+        if (updated > 0) {
+            log.info("trade_date回填完成: {} 条", updated);
+        }
+        dropLegacyIndexes(collection);
+        return updated;
+    }
+
+    private static long write(MongoCollection<Document> collection, List<WriteModel<Document>> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long modified = collection.bulkWrite(batch).getModifiedCount();
+        batch.clear();
+        return modified;
+    }
+
+    private static void dropLegacyIndexes(MongoCollection<Document> collection) {
+        for (Document index : collection.listIndexes().into(new ArrayList<>())) {
+            String name = index.getString("name");
+            if (LEGACY_INDEXES.contains(name)) {
+                collection.dropIndex(name);
+                log.info("已删除索引 {}，由trade_date索引取代", name);
+            }
+        }
+    }
+}
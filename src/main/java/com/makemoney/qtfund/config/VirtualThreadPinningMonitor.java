@@ -0,0 +1,107 @@
+package com.makemoney.qtfund.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 虚拟线程pinning诊断
+ * 虚拟线程在synchronized块或native调用中阻塞时无法让出载体线程，会占住载体线程并降低并发。
+ * 启用虚拟线程时通过JFR的jdk.VirtualThreadPinned事件记录超过阈值的pinning，
+ * 每个位置首次出现时输出调用栈，之后只累计次数，避免刷屏
+ */
+@Component
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    /**
+     * 日志中输出的调用栈深度
+     */
+    private static final int MAX_FRAMES = 12;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${qtfund.virtual-threads.pinning-diagnostics.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 只记录阻塞时间超过该阈值的pinning
+     */
+    @Value("${qtfund.virtual-threads.pinning-threshold-ms:20}")
+    private long thresholdMillis;
+
+    /**
+     * 调用栈顶部位置 -> 次数
+     */
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    private RecordingStream stream;
+
+    @PostConstruct
+    public void start() {
+        if (!virtualThreads || !enabled) {
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("虚拟线程pinning诊断已启用, 阈值={}ms", thresholdMillis);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * 各位置的pinning次数
+     */
+    public Map<String, Long> getCounts() {
+        Map<String, Long> result = new HashMap<>();
+        counts.forEach((site, count) -> result.put(site, count.sum()));
+        return result;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace != null ? stackTrace.getFrames() : List.of();
+        String site = frames.isEmpty() ? "unknown" : format(frames.get(0));
+        LongAdder count = counts.computeIfAbsent(site, key -> new LongAdder());
+        count.increment();
+        if (count.sum() > 1) {
+            return;
+        }
+        StringBuilder trace = new StringBuilder();
+        for (int i = 0; i < Math.min(frames.size(), MAX_FRAMES); i++) {
+            trace.append("\n\tat ").append(format(frames.get(i)));
+        }
+        log.warn("虚拟线程pinning {}ms, 线程={}{}", event.getDuration().toMillis(),
+                event.getThread() != null ? event.getThread().getJavaName() : "unknown", trace);
+    }
+
+    private static String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+}
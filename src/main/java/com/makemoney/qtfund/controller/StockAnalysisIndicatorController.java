@@ -0,0 +1,50 @@
+package com.makemoney.qtfund.controller;
+
+import com.makemoney.qtfund.dto.IndicatorSeries;
+import com.makemoney.qtfund.dto.IndicatorSnapshot;
+import com.makemoney.qtfund.service.IndicatorService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 均线与趋势指标Controller层
+ */
+@RestController
+@RequestMapping("/api/stock-analysis/indicators")
+public class StockAnalysisIndicatorController {
+
+    @Autowired
+    private IndicatorService indicatorService;
+
+    /**
+     * 单个合约的均线序列及区间最后一天的趋势状态
+     * GET /api/stock-analysis/indicators?exchangeId={exchangeId}&instrumentId={instrumentId}&from={from}&to={to}
+     */
+    @GetMapping
+    public ResponseEntity<IndicatorSeries> getIndicators(
+            @RequestParam String exchangeId,
+            @RequestParam String instrumentId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date to) {
+        return ResponseEntity.ok(indicatorService.getIndicators(exchangeId, instrumentId, from, to));
+    }
+
+    /**
+     * 全市场在某一交易日的趋势状态，不传日期时取最新日期；bullishOnly=true时只返回多头排列的合约
+     * GET /api/stock-analysis/indicators/universe?targetDate={targetDate}&bullishOnly=true
+     */
+    @GetMapping("/universe")
+    public ResponseEntity<List<IndicatorSnapshot>> getUniverse(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date targetDate,
+            @RequestParam(defaultValue = "false") boolean bullishOnly) {
+        return ResponseEntity.ok(indicatorService.getUniverse(targetDate, bullishOnly));
+    }
+}
@@ -0,0 +1,66 @@
+package com.makemoney.qtfund.controller;
+
+import com.makemoney.qtfund.dto.IngestBatchStatus;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.service.StockAnalysisIngestService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * 股票分析结果异步写入Controller层
+ */
+@RestController
+@RequestMapping("/api/stock-analysis/ingest")
+public class StockAnalysisIngestController {
+
+    /**
+     * 队列已满时建议的重试间隔（秒）
+     */
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    @Autowired
+    private StockAnalysisIngestService ingestService;
+
+    /**
+     * 异步批量创建或更新，放入写入队列后立即返回202和批次状态，队列已满时返回429
+     * POST /api/stock-analysis/ingest
+     */
+    @PostMapping
+    public ResponseEntity<IngestBatchStatus> submit(@RequestBody List<StockAnalysisResult> stockAnalysisResults) {
+        IngestBatchStatus status;
+        try {
+            status = ingestService.submit(stockAnalysisResults);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build();
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/stock-analysis/ingest/" + status.getBatchId()))
+                .body(status);
+    }
+
+    /**
+     * 查询批次的处理状态
+     * GET /api/stock-analysis/ingest/{batchId}
+     */
+    @GetMapping("/{batchId}")
+    public ResponseEntity<IngestBatchStatus> getStatus(@PathVariable String batchId) {
+        IngestBatchStatus status = ingestService.getStatus(batchId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+}
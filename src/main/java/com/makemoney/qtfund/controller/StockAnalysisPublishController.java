@@ -0,0 +1,46 @@
+package com.makemoney.qtfund.controller;
+
+import com.makemoney.qtfund.dto.SnapshotInfo;
+import com.makemoney.qtfund.service.LatestSnapshotCache;
+import com.makemoney.qtfund.service.StockAnalysisResultService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Date;
+
+/**
+ * 交易日发布Controller层
+ */
+@RestController
+@RequestMapping("/api/stock-analysis/publish")
+public class StockAnalysisPublishController {
+
+    @Autowired
+    private StockAnalysisResultService service;
+
+    /**
+     * 提交交易日：该日数据写完后调用，/latest等接口整体切换到该交易日
+     * 该日期没有数据时返回400，auto发布模式下返回409
+     * POST /api/stock-analysis/publish?targetDate={targetDate}
+     */
+    @PostMapping
+    public ResponseEntity<SnapshotInfo> commitDay(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date targetDate) {
+        LatestSnapshotCache.Snapshot snapshot;
+        try {
+            snapshot = service.commitDay(targetDate);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok(new SnapshotInfo(snapshot.getVersion(), snapshot.getBuiltAt(),
+                snapshot.getTargetDate(), snapshot.getRows().size()));
+    }
+}
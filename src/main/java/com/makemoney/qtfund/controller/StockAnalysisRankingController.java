@@ -0,0 +1,45 @@
+package com.makemoney.qtfund.controller;
+
+import com.makemoney.qtfund.dto.RankingRunResult;
+import com.makemoney.qtfund.service.StockAnalysisResultService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Date;
+
+/**
+ * 排名与变化量计算Controller层
+ */
+@RestController
+@RequestMapping("/api/stock-analysis/rankings")
+public class StockAnalysisRankingController {
+
+    @Autowired
+    private StockAnalysisResultService service;
+
+    /**
+     * 根据某一交易日已写入的score重算排名、scoreChange和rankingChange
+     * POST /api/stock-analysis/rankings/recompute?targetDate={targetDate}
+     */
+    @PostMapping("/recompute")
+    public ResponseEntity<RankingRunResult> recompute(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date targetDate) {
+        return ResponseEntity.ok(service.recomputeRankings(targetDate));
+    }
+
+    /**
+     * 回填区间内每个交易日的排名和变化量，不传日期时处理全部历史
+     * POST /api/stock-analysis/rankings/backfill?from={from}&to={to}
+     */
+    @PostMapping("/backfill")
+    public ResponseEntity<RankingRunResult> backfill(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date to) {
+        return ResponseEntity.ok(service.backfillRankings(from, to));
+    }
+}
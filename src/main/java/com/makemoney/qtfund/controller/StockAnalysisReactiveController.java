@@ -0,0 +1,94 @@
+package com.makemoney.qtfund.controller;
+
+import com.makemoney.qtfund.dto.StockAnalysisQuery;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.service.ReactiveStockAnalysisResultService;
+import com.makemoney.qtfund.util.StockAnalysisFields;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 股票分析结果响应式读取Controller层
+ * 返回Flux，Accept为application/x-ndjson时逐行流式写出，写完一行再从数据库拉取下一行；
+ * Accept为application/json时汇总为JSON数组返回
+ */
+@RestController
+@RequestMapping("/api/reactive/stock-analysis")
+public class StockAnalysisReactiveController {
+
+    @Autowired
+    private ReactiveStockAnalysisResultService service;
+
+    /**
+     * 获取最新日期的所有数据
+     * GET /api/reactive/stock-analysis/latest
+     */
+    @GetMapping(value = "/latest", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Flux<StockAnalysisResult>> getLatest() {
+        return ResponseEntity.ok(service.findLatest());
+    }
+
+    /**
+     * 查询单个合约在[from, to]内的历史，按日期升序
+     * GET /api/reactive/stock-analysis/history?exchangeId={exchangeId}&instrumentId={instrumentId}&from={from}&to={to}
+     */
+    @GetMapping(value = "/history", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Flux<StockAnalysisResult>> getHistory(
+            @RequestParam String exchangeId,
+            @RequestParam String instrumentId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date to) {
+        return ResponseEntity.ok(service.findHistory(exchangeId, instrumentId, from, to));
+    }
+
+    /**
+     * 组合查询，参数与GET /api/stock-analysis/search相同（不支持cursor分页）
+     * GET /api/reactive/stock-analysis/search?targetDate={targetDate}&minRanking=1&maxRanking=50&sort=-score&limit=20
+     */
+    @GetMapping(value = "/search", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Flux<Map<String, Object>>> search(
+            @RequestParam(required = false) String exchangeId,
+            @RequestParam(required = false) String instrumentId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date targetDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date to,
+            @RequestParam(required = false) Integer minRanking,
+            @RequestParam(required = false) Integer maxRanking,
+            @RequestParam(required = false) Double minScore,
+            @RequestParam(required = false) Double maxScore,
+            @RequestParam(required = false) Double minAmount,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        StockAnalysisQuery query = new StockAnalysisQuery();
+        query.setExchangeId(exchangeId);
+        query.setInstrumentId(instrumentId);
+        query.setTargetDate(targetDate);
+        query.setFrom(from);
+        query.setTo(to);
+        query.setMinRanking(minRanking);
+        query.setMaxRanking(maxRanking);
+        query.setMinScore(minScore);
+        query.setMaxScore(maxScore);
+        query.setMinAmount(minAmount);
+        query.setName(name);
+        query.setSort(sort);
+        query.setLimit(limit);
+        try {
+            return ResponseEntity.ok(service.search(query, StockAnalysisFields.parse(fields)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -1,15 +1,38 @@
 package com.makemoney.qtfund.controller;
 
+import com.makemoney.qtfund.dto.BatchSaveResult;
+import com.makemoney.qtfund.dto.CursorPage;
+import com.makemoney.qtfund.dto.DailyAnalytics;
+import com.makemoney.qtfund.dto.InstrumentHistory;
+import com.makemoney.qtfund.dto.InstrumentKey;
+import com.makemoney.qtfund.dto.InstrumentSuggestion;
+import com.makemoney.qtfund.dto.SnapshotInfo;
+import com.makemoney.qtfund.dto.StockAnalysisQuery;
 import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.service.DataVersionTracker;
+import com.makemoney.qtfund.service.EncodedResponseCache;
+import com.makemoney.qtfund.service.LatestSnapshotCache;
+import com.makemoney.qtfund.service.StockAnalysisExporter;
 import com.makemoney.qtfund.service.StockAnalysisResultService;
+import com.makemoney.qtfund.util.HistoryDownsampler;
+import com.makemoney.qtfund.util.StockAnalysisFields;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -20,6 +43,16 @@ import java.util.Optional;
 @RequestMapping("/api/stock-analysis")
 public class StockAnalysisResultController {
 
+    /**
+     * 下一页令牌的响应头，没有下一页时不返回
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * 批量历史查询一次最多的合约数
+     */
+    private static final int MAX_BATCH_INSTRUMENTS = 200;
+
     @Autowired
     private StockAnalysisResultService service;
 
@@ -30,19 +63,21 @@ public class StockAnalysisResultController {
      */
     @PostMapping
     public ResponseEntity<StockAnalysisResult> create(@RequestBody StockAnalysisResult stockAnalysisResult) {
-        // 检查是否存在相同的记录
-        Optional<StockAnalysisResult> existing = service.findByExchangeIdAndInstrumentIdAndTargetDate(
-                stockAnalysisResult.getExchangeId(),
-                stockAnalysisResult.getInstrumentId(),
-                stockAnalysisResult.getTargetDate());
+        // 一次upsert，如果存在则更新，不存在则插入；根据是否新插入决定返回的状态码
+        boolean inserted = service.upsert(stockAnalysisResult);
+        HttpStatus status = inserted ? HttpStatus.CREATED : HttpStatus.OK;
 
-        // 使用saveOrUpdate方法，如果存在则更新，不存在则插入
-        StockAnalysisResult result = service.saveOrUpdate(stockAnalysisResult);
-        
-        // 根据是否存在决定返回的状态码
-        HttpStatus status = existing.isPresent() ? HttpStatus.OK : HttpStatus.CREATED;
-        
-        return ResponseEntity.status(status).body(result);
+        return ResponseEntity.status(status).body(stockAnalysisResult);
+    }
+
+    /**
+     * 批量创建或更新股票分析结果
+     * 以exchangeId、instrumentId、targetDate为键进行bulk upsert，返回新增/更新/失败的行数
+     * POST /api/stock-analysis/batch
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchSaveResult> createBatch(@RequestBody List<StockAnalysisResult> stockAnalysisResults) {
+        return ResponseEntity.ok(service.saveOrUpdateAll(stockAnalysisResults));
     }
 
     /**
@@ -57,66 +92,250 @@ public class StockAnalysisResultController {
     }
 
     /**
-     * 查询所有
-     * GET /api/stock-analysis
+     * 分页查询所有，按(targetDate, exchangeId, instrumentId)排序
+     * 下一页令牌在X-Next-Cursor响应头中返回，fields为逗号分隔的字段名，不传时返回全部字段
+     * GET /api/stock-analysis?cursor={cursor}&size={size}&fields={fields}
      */
     @GetMapping
-    public ResponseEntity<List<StockAnalysisResult>> getAll() {
-        List<StockAnalysisResult> results = service.findAll();
-        return ResponseEntity.ok(results);
+    public ResponseEntity<List<Map<String, Object>>> getAll(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + StockAnalysisResultService.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
+        return page(new StockAnalysisQuery(), cursor, size, fields);
     }
 
     /**
-     * 获取最新日期的所有数据
+     * 获取最新日期的所有数据，直接写出预序列化（并按Accept-Encoding预压缩）的字节
+     * 响应带有该日期数据版本的ETag，If-None-Match命中时返回304
      * GET /api/stock-analysis/latest
      */
     @GetMapping("/latest")
-    public ResponseEntity<List<StockAnalysisResult>> getLatest() {
-        Date latestDate = service.findLatestDate();
-        if (latestDate == null) {
-            return ResponseEntity.ok(List.of());
+    public ResponseEntity<byte[]> getLatest(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return encoded(service.getLatestEncoded(), EncodedResponseCache.negotiate(acceptEncoding));
+    }
+
+    /**
+     * 获取最新快照的版本号和构建时间
+     * GET /api/stock-analysis/latest/info
+     */
+    @GetMapping("/latest/info")
+    public ResponseEntity<SnapshotInfo> getLatestInfo() {
+        LatestSnapshotCache.Snapshot snapshot = service.getLatestSnapshot();
+        return ResponseEntity.ok(new SnapshotInfo(snapshot.getVersion(), snapshot.getBuiltAt(),
+                snapshot.getTargetDate(), snapshot.getRows().size()));
+    }
+
+    /**
+     * 只按日期查询时直接返回该日期的预序列化响应
+     * 数据版本未变化时直接返回304，不读取数据
+     * GET /api/stock-analysis/search?targetDate={targetDate}
+     */
+    @GetMapping(value = "/search", params = {"targetDate", "!exchangeId", "!instrumentId", "!from", "!to",
+            "!minRanking", "!maxRanking", "!minScore", "!maxScore", "!minAmount", "!name", "!sort", "!limit", "!fields",
+            "!cursor", "!size"})
+    public ResponseEntity<byte[]> searchByTargetDate(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date targetDate,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) {
+        String encoding = EncodedResponseCache.negotiate(acceptEncoding);
+        DataVersionTracker.Version version = service.getDateVersion(targetDate);
+        if (request.checkNotModified(service.eTag(dateScope(targetDate), version, encoding),
+                version.getLastModified())) {
+            return null;
         }
-        return ResponseEntity.ok(service.findByTargetDate(latestDate));
+        return encoded(service.getEncodedByTargetDate(targetDate), encoding);
     }
 
     /**
-     * 根据交易所代码和合约代码查询
+     * 查询单个合约的全部历史
+     * 数据版本未变化时直接返回304，不读取数据
      * GET /api/stock-analysis/search?exchangeId={exchangeId}&instrumentId={instrumentId}
      */
+    @GetMapping(value = "/search", params = {"exchangeId", "instrumentId", "!targetDate", "!from", "!to",
+            "!minRanking", "!maxRanking", "!minScore", "!maxScore", "!minAmount", "!name", "!sort", "!limit", "!fields",
+            "!cursor", "!size"})
+    public ResponseEntity<List<StockAnalysisResult>> searchByInstrument(
+            @RequestParam String exchangeId,
+            @RequestParam String instrumentId,
+            WebRequest request) {
+        DataVersionTracker.Version version = service.getInstrumentVersion(exchangeId, instrumentId);
+        String eTag = service.eTag("i-" + exchangeId + "-" + instrumentId, version, null);
+        if (request.checkNotModified(eTag, version.getLastModified())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(eTag)
+                .lastModified(version.getLastModified())
+                .body(service.findByExchangeIdAndInstrumentId(exchangeId, instrumentId));
+    }
+
+    /**
+     * 组合查询，所有传入的条件同时生效（范围为闭区间），由数据库完成过滤、排序和取前limit条
+     * sort为逗号分隔的字段名，前缀"-"表示降序，例如sort=-score；fields为返回的字段
+     * 未指定sort和limit时按cursor/size分页返回，下一页令牌在X-Next-Cursor响应头中；
+     * 指定sort而未指定limit时最多返回DEFAULT_PAGE_SIZE行
+     * GET /api/stock-analysis/search?targetDate={targetDate}&minRanking=1&maxRanking=50&minAmount=1e7&name=ETF&sort=-score&limit=20
+     */
     @GetMapping("/search")
-    public ResponseEntity<List<StockAnalysisResult>> search(
+    public ResponseEntity<List<Map<String, Object>>> search(
             @RequestParam(required = false) String exchangeId,
             @RequestParam(required = false) String instrumentId,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date targetDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date to,
             @RequestParam(required = false) Integer minRanking,
             @RequestParam(required = false) Integer maxRanking,
             @RequestParam(required = false) Double minScore,
-            @RequestParam(required = false) Double maxScore) {
+            @RequestParam(required = false) Double maxScore,
+            @RequestParam(required = false) Double minAmount,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + StockAnalysisResultService.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
+        StockAnalysisQuery query = new StockAnalysisQuery();
+        query.setExchangeId(exchangeId);
+        query.setInstrumentId(instrumentId);
+        query.setTargetDate(targetDate);
+        query.setFrom(from);
+        query.setTo(to);
+        query.setMinRanking(minRanking);
+        query.setMaxRanking(maxRanking);
+        query.setMinScore(minScore);
+        query.setMaxScore(maxScore);
+        query.setMinAmount(minAmount);
+        query.setName(name);
+        query.setSort(sort);
+        query.setLimit(limit);
 
-        if (exchangeId != null && instrumentId != null && targetDate != null) {
-            Optional<StockAnalysisResult> result = service.findByExchangeIdAndInstrumentIdAndTargetDate(
-                    exchangeId, instrumentId, targetDate);
-            return result.map(r -> ResponseEntity.ok(List.of(r)))
-                    .orElse(ResponseEntity.ok(List.of()));
+        if (sort == null && limit == null) {
+            return page(query, cursor, size, fields);
         }
-
-        if (exchangeId != null && instrumentId != null) {
-            return ResponseEntity.ok(service.findByExchangeIdAndInstrumentId(exchangeId, instrumentId));
+        try {
+            return ResponseEntity.ok(service.search(query, StockAnalysisFields.parse(fields)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
+    }
 
-        if (targetDate != null) {
-            return ResponseEntity.ok(service.findByTargetDate(targetDate));
+    /**
+     * 某一交易日的横截面统计：score、rankingChange、amount的前后N名，score分位数和直方图，按交易所汇总
+     * 不传日期时取最新日期，数据版本未变化时返回304
+     * GET /api/stock-analysis/analytics?targetDate={targetDate}&top={top}
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<DailyAnalytics> getAnalytics(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date targetDate,
+            @RequestParam(defaultValue = "10") int top,
+            WebRequest request) {
+        Date date = targetDate != null ? targetDate : service.findLatestDate();
+        if (date == null) {
+            return ResponseEntity.notFound().build();
+        }
+        DataVersionTracker.Version version = service.getDateVersion(date);
+        String eTag = service.eTag("a" + dateScope(date), version, Integer.toString(top));
+        if (request.checkNotModified(eTag, version.getLastModified())) {
+            return null;
         }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(eTag)
+                .lastModified(version.getLastModified())
+                .body(service.getAnalytics(date, top));
+    }
 
-        if (minRanking != null && maxRanking != null) {
-            return ResponseEntity.ok(service.findByRankingBetween(minRanking, maxRanking));
+    /**
+     * 按代码或名称联想合约，覆盖全部合约而不只是当前日期
+     * GET /api/stock-analysis/suggest?q={q}&limit={limit}
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<InstrumentSuggestion>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(service.suggest(q, limit));
+    }
+
+    /**
+     * 流式导出全部数据，可按日期区间[from, to]和交易所过滤
+     * format为ndjson（默认）或csv，fields为逗号分隔的字段名，不传时导出全部字段
+     * GET /api/stock-analysis/export?format={format}&from={from}&to={to}&exchangeId={exchangeId}&fields={fields}
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date to,
+            @RequestParam(required = false) String exchangeId,
+            @RequestParam(required = false) String fields) {
+        StockAnalysisExporter.Format exportFormat;
+        List<String> exportFields;
+        try {
+            exportFormat = StockAnalysisExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+            exportFields = StockAnalysisFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
+        boolean csv = exportFormat == StockAnalysisExporter.Format.CSV;
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(csv ? "stock-analysis.csv" : "stock-analysis.ndjson").build().toString())
+                .body(out -> service.export(out, exportFormat, from, to, exchangeId, exportFields));
+    }
 
-        if (minScore != null && maxScore != null) {
-            return ResponseEntity.ok(service.findByScoreBetween(minScore, maxScore));
+    /**
+     * 获取单个合约的列式历史，可按日期区间截取
+     * interval为day（默认）、week或month，按周/月聚合；maxPoints限制返回的点数（LTTB选点）
+     * 数据来自内存中的历史索引，版本未变化时返回304
+     * GET /api/stock-analysis/history?exchangeId={exchangeId}&instrumentId={instrumentId}&from={from}&to={to}&interval={interval}&maxPoints={maxPoints}
+     */
+    @GetMapping("/history")
+    public ResponseEntity<InstrumentHistory> getHistory(
+            @RequestParam String exchangeId,
+            @RequestParam String instrumentId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date to,
+            @RequestParam(defaultValue = "day") String interval,
+            @RequestParam(required = false) Integer maxPoints,
+            WebRequest request) {
+        HistoryDownsampler.Interval downsampleInterval = parseInterval(interval);
+        if (downsampleInterval == null) {
+            return ResponseEntity.badRequest().build();
         }
+        DataVersionTracker.Version version = service.getInstrumentVersion(exchangeId, instrumentId);
+        String eTag = service.eTag("h-" + exchangeId + "-" + instrumentId, version, null);
+        if (request.checkNotModified(eTag, version.getLastModified())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(eTag)
+                .lastModified(version.getLastModified())
+                .body(service.getHistory(exchangeId, instrumentId, from, to, downsampleInterval, maxPoints));
+    }
 
-        return ResponseEntity.ok(service.findAll());
+    /**
+     * 批量获取多个合约的列式历史，可按日期区间截取，用于多个合约对比；interval和maxPoints与单个合约相同
+     * POST /api/stock-analysis/history/batch?from={from}&to={to}&interval={interval}&maxPoints={maxPoints}
+     * 请求体: [{"exchangeId": "SZ", "instrumentId": "159206"}, ...]
+     */
+    @PostMapping("/history/batch")
+    public ResponseEntity<List<InstrumentHistory>> getHistoryBatch(
+            @RequestBody List<InstrumentKey> instruments,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date to,
+            @RequestParam(defaultValue = "day") String interval,
+            @RequestParam(required = false) Integer maxPoints) {
+        HistoryDownsampler.Interval downsampleInterval = parseInterval(interval);
+        if (downsampleInterval == null || instruments.size() > MAX_BATCH_INSTRUMENTS || instruments.stream().anyMatch(instrument ->
+                instrument == null || instrument.getExchangeId() == null || instrument.getInstrumentId() == null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(service.getHistories(instruments, from, to, downsampleInterval, maxPoints));
     }
 
     /**
@@ -156,6 +375,45 @@ public class StockAnalysisResultController {
         service.deleteAll();
         return ResponseEntity.noContent().build();
     }
-}
 
+    private ResponseEntity<List<Map<String, Object>>> page(StockAnalysisQuery query, String cursor, int size,
+                                                           String fields) {
+        CursorPage page;
+        try {
+            page = service.findPage(query, cursor, size, StockAnalysisFields.parse(fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getItems());
+    }
+
+    private ResponseEntity<byte[]> encoded(EncodedResponseCache.EncodedBody body, String encoding) {
+        DataVersionTracker.Version version = body.getDataVersion();
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .cacheControl(CacheControl.noCache())
+                .eTag(service.eTag(dateScope(body.getTargetDate()), version, encoding))
+                .lastModified(version.getLastModified());
+        if (encoding != null) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        return builder.body(body.bytes(encoding));
+    }
 
+    private static HistoryDownsampler.Interval parseInterval(String interval) {
+        try {
+            return HistoryDownsampler.Interval.valueOf(interval.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String dateScope(Date targetDate) {
+        return targetDate != null ? "d" + Long.toString(targetDate.getTime(), 36) : "d";
+    }
+}
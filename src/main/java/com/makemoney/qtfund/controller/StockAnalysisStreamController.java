@@ -0,0 +1,37 @@
+package com.makemoney.qtfund.controller;
+
+import com.makemoney.qtfund.service.SnapshotEventBroadcaster;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 最新快照变化推送Controller层
+ */
+@RestController
+@RequestMapping("/api/stock-analysis/stream")
+public class StockAnalysisStreamController {
+
+    @Autowired
+    private SnapshotEventBroadcaster broadcaster;
+
+    /**
+     * 订阅最新快照的变化（Server-Sent Events），代替轮询/latest
+     * 连接后先收到snapshot事件；发布新交易日时收到published事件；同一交易日数据变化时收到diff事件，只包含变化的score、ranking字段
+     * 连接数已满时返回503
+     * GET /api/stock-analysis/stream
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream() {
+        SseEmitter emitter = broadcaster.subscribe();
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+}
@@ -0,0 +1,120 @@
+package com.makemoney.qtfund.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量保存结果
+ * 统计每一行的处理情况：新增、更新、合并（同一批次内重复的键）和失败
+ */
+public class BatchSaveResult {
+
+    private int total;
+
+    private int inserted;
+
+    private int updated;
+
+    private int merged;
+
+    private int failed;
+
+    private List<RowError> errors = new ArrayList<>();
+
+    public BatchSaveResult() {
+    }
+
+    public BatchSaveResult(int total) {
+        this.total = total;
+    }
+
+    /**
+     * 记录一行失败
+     */
+    public void addError(int index, String message) {
+        failed++;
+        errors.add(new RowError(index, message));
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public void setInserted(int inserted) {
+        this.inserted = inserted;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(int updated) {
+        this.updated = updated;
+    }
+
+    public int getMerged() {
+        return merged;
+    }
+
+    public void setMerged(int merged) {
+        this.merged = merged;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<RowError> errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * 单行错误信息，index为该行在请求列表中的下标
+     */
+    public static class RowError {
+
+        private int index;
+
+        private String message;
+
+        public RowError() {
+        }
+
+        public RowError(int index, String message) {
+            this.index = index;
+            this.message = message;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.makemoney.qtfund.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按键集分页的一页结果
+ * items只包含请求的字段，nextCursor为null表示没有下一页
+ */
+public class CursorPage {
+
+    private List<Map<String, Object>> items;
+
+    private String nextCursor;
+
+    public CursorPage() {
+    }
+
+    public CursorPage(List<Map<String, Object>> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Map<String, Object>> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Map<String, Object>> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
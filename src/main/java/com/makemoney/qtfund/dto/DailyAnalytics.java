@@ -0,0 +1,406 @@
+package com.makemoney.qtfund.dto;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 某一交易日的横截面统计
+ * 包含按score、rankingChange、amount的前后N名，score分位数和直方图，以及按交易所汇总
+ */
+public class DailyAnalytics {
+
+    private Date targetDate;
+
+    private int count;
+
+    private List<Mover> topByScore;
+
+    private List<Mover> bottomByScore;
+
+    /**
+     * 排名上升最多（rankingChange最大，上升为正）
+     */
+    private List<Mover> topRankingGainers;
+
+    /**
+     * 排名下降最多（rankingChange最小）
+     */
+    private List<Mover> topRankingLosers;
+
+    private List<Mover> topByAmount;
+
+    private List<Mover> bottomByAmount;
+
+    private ScoreStats scoreStats;
+
+    private Histogram scoreHistogram;
+
+    private List<ExchangeStats> exchanges;
+
+    public DailyAnalytics() {
+    }
+
+    /**
+     * 复制一份，前后N名只保留前top条
+     */
+    public DailyAnalytics limitTo(int top) {
+        DailyAnalytics copy = new DailyAnalytics();
+        copy.targetDate = targetDate;
+        copy.count = count;
+        copy.topByScore = head(topByScore, top);
+        copy.bottomByScore = head(bottomByScore, top);
+        copy.topRankingGainers = head(topRankingGainers, top);
+        copy.topRankingLosers = head(topRankingLosers, top);
+        copy.topByAmount = head(topByAmount, top);
+        copy.bottomByAmount = head(bottomByAmount, top);
+        copy.scoreStats = scoreStats;
+        copy.scoreHistogram = scoreHistogram;
+        copy.exchanges = exchanges;
+        return copy;
+    }
+
+    private static List<Mover> head(List<Mover> movers, int top) {
+        return movers == null || movers.size() <= top ? movers : List.copyOf(movers.subList(0, top));
+    }
+
+    public Date getTargetDate() {
+        return targetDate;
+    }
+
+    public void setTargetDate(Date targetDate) {
+        this.targetDate = targetDate;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public List<Mover> getTopByScore() {
+        return topByScore;
+    }
+
+    public void setTopByScore(List<Mover> topByScore) {
+        this.topByScore = topByScore;
+    }
+
+    public List<Mover> getBottomByScore() {
+        return bottomByScore;
+    }
+
+    public void setBottomByScore(List<Mover> bottomByScore) {
+        this.bottomByScore = bottomByScore;
+    }
+
+    public List<Mover> getTopRankingGainers() {
+        return topRankingGainers;
+    }
+
+    public void setTopRankingGainers(List<Mover> topRankingGainers) {
+        this.topRankingGainers = topRankingGainers;
+    }
+
+    public List<Mover> getTopRankingLosers() {
+        return topRankingLosers;
+    }
+
+    public void setTopRankingLosers(List<Mover> topRankingLosers) {
+        this.topRankingLosers = topRankingLosers;
+    }
+
+    public List<Mover> getTopByAmount() {
+        return topByAmount;
+    }
+
+    public void setTopByAmount(List<Mover> topByAmount) {
+        this.topByAmount = topByAmount;
+    }
+
+    public List<Mover> getBottomByAmount() {
+        return bottomByAmount;
+    }
+
+    public void setBottomByAmount(List<Mover> bottomByAmount) {
+        this.bottomByAmount = bottomByAmount;
+    }
+
+    public ScoreStats getScoreStats() {
+        return scoreStats;
+    }
+
+    public void setScoreStats(ScoreStats scoreStats) {
+        this.scoreStats = scoreStats;
+    }
+
+    public Histogram getScoreHistogram() {
+        return scoreHistogram;
+    }
+
+    public void setScoreHistogram(Histogram scoreHistogram) {
+        this.scoreHistogram = scoreHistogram;
+    }
+
+    public List<ExchangeStats> getExchanges() {
+        return exchanges;
+    }
+
+    public void setExchanges(List<ExchangeStats> exchanges) {
+        this.exchanges = exchanges;
+    }
+
+    /**
+     * 前后N名中的一行
+     */
+    public static class Mover {
+
+        private String exchangeId;
+
+        private String instrumentId;
+
+        private String instrumentName;
+
+        private Double score;
+
+        private Integer ranking;
+
+        private Integer rankingChange;
+
+        private Double amount;
+
+        public Mover() {
+        }
+
+        public Mover(String exchangeId, String instrumentId, String instrumentName, Double score,
+                     Integer ranking, Integer rankingChange, Double amount) {
+            this.exchangeId = exchangeId;
+            this.instrumentId = instrumentId;
+            this.instrumentName = instrumentName;
+            this.score = score;
+            this.ranking = ranking;
+            this.rankingChange = rankingChange;
+            this.amount = amount;
+        }
+
+        public String getExchangeId() {
+            return exchangeId;
+        }
+
+        public void setExchangeId(String exchangeId) {
+            this.exchangeId = exchangeId;
+        }
+
+        public String getInstrumentId() {
+            return instrumentId;
+        }
+
+        public void setInstrumentId(String instrumentId) {
+            this.instrumentId = instrumentId;
+        }
+
+        public String getInstrumentName() {
+            return instrumentName;
+        }
+
+        public void setInstrumentName(String instrumentName) {
+            this.instrumentName = instrumentName;
+        }
+
+        public Double getScore() {
+            return score;
+        }
+
+        public void setScore(Double score) {
+            this.score = score;
+        }
+
+        public Integer getRanking() {
+            return ranking;
+        }
+
+        public void setRanking(Integer ranking) {
+            this.ranking = ranking;
+        }
+
+        public Integer getRankingChange() {
+            return rankingChange;
+        }
+
+        public void setRankingChange(Integer rankingChange) {
+            this.rankingChange = rankingChange;
+        }
+
+        public Double getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Double amount) {
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * score的描述统计，percentiles为 "p50" -> 值
+     */
+    public static class ScoreStats {
+
+        private int count;
+
+        private Double min;
+
+        private Double max;
+
+        private Double mean;
+
+        private Double stdDev;
+
+        private Map<String, Double> percentiles;
+
+        public ScoreStats() {
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public Double getMin() {
+            return min;
+        }
+
+        public void setMin(Double min) {
+            this.min = min;
+        }
+
+        public Double getMax() {
+            return max;
+        }
+
+        public void setMax(Double max) {
+            this.max = max;
+        }
+
+        public Double getMean() {
+            return mean;
+        }
+
+        public void setMean(Double mean) {
+            this.mean = mean;
+        }
+
+        public Double getStdDev() {
+            return stdDev;
+        }
+
+        public void setStdDev(Double stdDev) {
+            this.stdDev = stdDev;
+        }
+
+        public Map<String, Double> getPercentiles() {
+            return percentiles;
+        }
+
+        public void setPercentiles(Map<String, Double> percentiles) {
+            this.percentiles = percentiles;
+        }
+    }
+
+    /**
+     * 等宽直方图，第i个区间为[edges[i], edges[i+1])，最后一个区间包含最大值
+     */
+    public static class Histogram {
+
+        private double[] edges;
+
+        private int[] counts;
+
+        public Histogram() {
+        }
+
+        public Histogram(double[] edges, int[] counts) {
+            this.edges = edges;
+            this.counts = counts;
+        }
+
+        public double[] getEdges() {
+            return edges;
+        }
+
+        public void setEdges(double[] edges) {
+            this.edges = edges;
+        }
+
+        public int[] getCounts() {
+            return counts;
+        }
+
+        public void setCounts(int[] counts) {
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * 按交易所汇总
+     */
+    public static class ExchangeStats {
+
+        private String exchangeId;
+
+        private int count;
+
+        private Double meanScore;
+
+        private Double medianScore;
+
+        private double totalAmount;
+
+        public ExchangeStats() {
+        }
+
+        public String getExchangeId() {
+            return exchangeId;
+        }
+
+        public void setExchangeId(String exchangeId) {
+            this.exchangeId = exchangeId;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public Double getMeanScore() {
+            return meanScore;
+        }
+
+        public void setMeanScore(Double meanScore) {
+            this.meanScore = meanScore;
+        }
+
+        public Double getMedianScore() {
+            return medianScore;
+        }
+
+        public void setMedianScore(Double medianScore) {
+            this.medianScore = medianScore;
+        }
+
+        public double getTotalAmount() {
+            return totalAmount;
+        }
+
+        public void setTotalAmount(double totalAmount) {
+            this.totalAmount = totalAmount;
+        }
+    }
+}
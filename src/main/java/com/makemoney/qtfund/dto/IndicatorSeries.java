@@ -0,0 +1,114 @@
+package com.makemoney.qtfund.dto;
+
+/**
+ * 单个合约的均线序列
+ * 各数组按日期升序一一对应，dates为yyyyMMdd整数；均线基于完整历史计算，数据不足处为NaN
+ */
+public class IndicatorSeries {
+
+    private String exchangeId;
+
+    private String instrumentId;
+
+    private String instrumentName;
+
+    private int[] dates;
+
+    private double[] close;
+
+    private double[] ma5;
+
+    private double[] ma10;
+
+    private double[] ma20;
+
+    private double[] ma60;
+
+    /**
+     * 区间最后一天的状态，区间为空时为null
+     */
+    private IndicatorSnapshot latest;
+
+    public IndicatorSeries() {
+    }
+
+    public String getExchangeId() {
+        return exchangeId;
+    }
+
+    public void setExchangeId(String exchangeId) {
+        this.exchangeId = exchangeId;
+    }
+
+    public String getInstrumentId() {
+        return instrumentId;
+    }
+
+    public void setInstrumentId(String instrumentId) {
+        this.instrumentId = instrumentId;
+    }
+
+    public String getInstrumentName() {
+        return instrumentName;
+    }
+
+    public void setInstrumentName(String instrumentName) {
+        this.instrumentName = instrumentName;
+    }
+
+    public int[] getDates() {
+        return dates;
+    }
+
+    public void setDates(int[] dates) {
+        this.dates = dates;
+    }
+
+    public double[] getClose() {
+        return close;
+    }
+
+    public void setClose(double[] close) {
+        this.close = close;
+    }
+
+    public double[] getMa5() {
+        return ma5;
+    }
+
+    public void setMa5(double[] ma5) {
+        this.ma5 = ma5;
+    }
+
+    public double[] getMa10() {
+        return ma10;
+    }
+
+    public void setMa10(double[] ma10) {
+        this.ma10 = ma10;
+    }
+
+    public double[] getMa20() {
+        return ma20;
+    }
+
+    public void setMa20(double[] ma20) {
+        this.ma20 = ma20;
+    }
+
+    public double[] getMa60() {
+        return ma60;
+    }
+
+    public void setMa60(double[] ma60) {
+        this.ma60 = ma60;
+    }
+
+    public IndicatorSnapshot getLatest() {
+        return latest;
+    }
+
+    public void setLatest(IndicatorSnapshot latest) {
+        this.latest = latest;
+    }
+}
@@ -0,0 +1,183 @@
+package com.makemoney.qtfund.dto;
+
+/**
+ * 某个合约在某一交易日的均线与趋势状态
+ * 均线数据不足或窗口内有缺失时为null
+ */
+public class IndicatorSnapshot {
+
+    private String exchangeId;
+
+    private String instrumentId;
+
+    private String instrumentName;
+
+    /**
+     * 交易日，yyyyMMdd
+     */
+    private int date;
+
+    private Double close;
+
+    private Double ma5;
+
+    private Double ma10;
+
+    private Double ma20;
+
+    private Double ma60;
+
+    /**
+     * 收盘价是否在对应均线之上
+     */
+    private boolean aboveMa5;
+
+    private boolean aboveMa10;
+
+    private boolean aboveMa20;
+
+    private boolean aboveMa60;
+
+    /**
+     * MA20在MA60之上
+     */
+    private boolean upTrend;
+
+    /**
+     * 多头排列：收盘价在MA20之上且MA20在MA60之上
+     */
+    private boolean bullish;
+
+    private String trendSummary;
+
+    public IndicatorSnapshot() {
+    }
+
+    public String getExchangeId() {
+        return exchangeId;
+    }
+
+    public void setExchangeId(String exchangeId) {
+        this.exchangeId = exchangeId;
+    }
+
+    public String getInstrumentId() {
+        return instrumentId;
+    }
+
+    public void setInstrumentId(String instrumentId) {
+        this.instrumentId = instrumentId;
+    }
+
+    public String getInstrumentName() {
+        return instrumentName;
+    }
+
+    public void setInstrumentName(String instrumentName) {
+        this.instrumentName = instrumentName;
+    }
+
+    public int getDate() {
+        return date;
+    }
+
+    public void setDate(int date) {
+        this.date = date;
+    }
+
+    public Double getClose() {
+        return close;
+    }
+
+    public void setClose(Double close) {
+        this.close = close;
+    }
+
+    public Double getMa5() {
+        return ma5;
+    }
+
+    public void setMa5(Double ma5) {
+        this.ma5 = ma5;
+    }
+
+    public Double getMa10() {
+        return ma10;
+    }
+
+    public void setMa10(Double ma10) {
+        this.ma10 = ma10;
+    }
+
+    public Double getMa20() {
+        return ma20;
+    }
+
+    public void setMa20(Double ma20) {
+        this.ma20 = ma20;
+    }
+
+    public Double getMa60() {
+        return ma60;
+    }
+
+    public void setMa60(Double ma60) {
+        this.ma60 = ma60;
+    }
+
+    public boolean isAboveMa5() {
+        return aboveMa5;
+    }
+
+    public void setAboveMa5(boolean aboveMa5) {
+        this.aboveMa5 = aboveMa5;
+    }
+
+    public boolean isAboveMa10() {
+        return aboveMa10;
+    }
+
+    public void setAboveMa10(boolean aboveMa10) {
+        this.aboveMa10 = aboveMa10;
+    }
+
+    public boolean isAboveMa20() {
+        return aboveMa20;
+    }
+
+    public void setAboveMa20(boolean aboveMa20) {
+        this.aboveMa20 = aboveMa20;
+    }
+
+    public boolean isAboveMa60() {
+        return aboveMa60;
+    }
+
+    public void setAboveMa60(boolean aboveMa60) {
+        this.aboveMa60 = aboveMa60;
+    }
+
+    public boolean isUpTrend() {
+        return upTrend;
+    }
+
+    public void setUpTrend(boolean upTrend) {
+        this.upTrend = upTrend;
+    }
+
+    public boolean isBullish() {
+        return bullish;
+    }
+
+    public void setBullish(boolean bullish) {
+        this.bullish = bullish;
+    }
+
+    public String getTrendSummary() {
+        return trendSummary;
+    }
+
+    public void setTrendSummary(String trendSummary) {
+        this.trendSummary = trendSummary;
+    }
+}
@@ -0,0 +1,165 @@
+package com.makemoney.qtfund.dto;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 异步写入批次的处理状态
+ * 每一行最终计入written、coalesced（在写入前被之后提交的相同键的行覆盖）或failed之一，
+ * 三者之和等于total时批次完成
+ */
+public class IngestBatchStatus {
+
+    /**
+     * 批次状态
+     */
+    public enum State {
+        QUEUED, COMPLETED
+    }
+
+    private String batchId;
+
+    private State state = State.QUEUED;
+
+    private int total;
+
+    private int written;
+
+    private int coalesced;
+
+    private int failed;
+
+    private List<BatchSaveResult.RowError> errors = new ArrayList<>();
+
+    private Date submittedAt;
+
+    private Date completedAt;
+
+    public IngestBatchStatus() {
+    }
+
+    public IngestBatchStatus(String batchId, int total) {
+        this.batchId = batchId;
+        this.total = total;
+        this.submittedAt = new Date();
+    }
+
+    /**
+     * 复制一份，用于在写入线程更新期间返回给调用方
+     */
+    public IngestBatchStatus copy() {
+        IngestBatchStatus copy = new IngestBatchStatus();
+        copy.batchId = batchId;
+        copy.state = state;
+        copy.total = total;
+        copy.written = written;
+        copy.coalesced = coalesced;
+        copy.failed = failed;
+        copy.errors = new ArrayList<>(errors);
+        copy.submittedAt = submittedAt;
+        copy.completedAt = completedAt;
+        return copy;
+    }
+
+    /**
+     * 记录一行失败，index为该行在提交列表中的下标
+     */
+    public void addError(int index, String message) {
+        failed++;
+        errors.add(new BatchSaveResult.RowError(index, message));
+        completeIfDone();
+    }
+
+    public void addWritten() {
+        written++;
+        completeIfDone();
+    }
+
+    public void addCoalesced() {
+        coalesced++;
+        completeIfDone();
+    }
+
+    /**
+     * 所有行都已有结果时标记为完成
+     */
+    public void completeIfDone() {
+        if (state == State.QUEUED && written + coalesced + failed >= total) {
+            state = State.COMPLETED;
+            completedAt = new Date();
+        }
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getWritten() {
+        return written;
+    }
+
+    public void setWritten(int written) {
+        this.written = written;
+    }
+
+    public int getCoalesced() {
+        return coalesced;
+    }
+
+    public void setCoalesced(int coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<BatchSaveResult.RowError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<BatchSaveResult.RowError> errors) {
+        this.errors = errors;
+    }
+
+    public Date getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(Date submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public Date getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Date completedAt) {
+        this.completedAt = completedAt;
+    }
+}
@@ -0,0 +1,103 @@
+package com.makemoney.qtfund.dto;
+
+/**
+ * 单个合约的列式历史
+ * 各数组按日期升序一一对应，dates为yyyyMMdd整数；缺失的close/amount/score为NaN，缺失的ranking为0
+ */
+public class InstrumentHistory {
+
+    private String exchangeId;
+
+    private String instrumentId;
+
+    private String instrumentName;
+
+    private int[] dates;
+
+    private double[] close;
+
+    private double[] amount;
+
+    private double[] score;
+
+    private int[] ranking;
+
+    public InstrumentHistory() {
+    }
+
+    public InstrumentHistory(String exchangeId, String instrumentId, String instrumentName, int[] dates,
+                             double[] close, double[] amount, double[] score, int[] ranking) {
+        this.exchangeId = exchangeId;
+        this.instrumentId = instrumentId;
+        this.instrumentName = instrumentName;
+        this.dates = dates;
+        this.close = close;
+        this.amount = amount;
+        this.score = score;
+        this.ranking = ranking;
+    }
+
+    public String getExchangeId() {
+        return exchangeId;
+    }
+
+    public void setExchangeId(String exchangeId) {
+        this.exchangeId = exchangeId;
+    }
+
+    public String getInstrumentId() {
+        return instrumentId;
+    }
+
+    public void setInstrumentId(String instrumentId) {
+        this.instrumentId = instrumentId;
+    }
+
+    public String getInstrumentName() {
+        return instrumentName;
+    }
+
+    public void setInstrumentName(String instrumentName) {
+        this.instrumentName = instrumentName;
+    }
+
+    public int[] getDates() {
+        return dates;
+    }
+
+    public void setDates(int[] dates) {
+        this.dates = dates;
+    }
+
+    public double[] getClose() {
+        return close;
+    }
+
+    public void setClose(double[] close) {
+        this.close = close;
+    }
+
+    public double[] getAmount() {
+        return amount;
+    }
+
+    public void setAmount(double[] amount) {
+        this.amount = amount;
+    }
+
+    public double[] getScore() {
+        return score;
+    }
+
+    public void setScore(double[] score) {
+        this.score = score;
+    }
+
+    public int[] getRanking() {
+        return ranking;
+    }
+
+    public void setRanking(int[] ranking) {
+        this.ranking = ranking;
+    }
+}
@@ -0,0 +1,35 @@
+package com.makemoney.qtfund.dto;
+
+/**
+ * 合约标识：交易所代码和合约代码
+ */
+public class InstrumentKey {
+
+    private String exchangeId;
+
+    private String instrumentId;
+
+    public InstrumentKey() {
+    }
+
+    public InstrumentKey(String exchangeId, String instrumentId) {
+        this.exchangeId = exchangeId;
+        this.instrumentId = instrumentId;
+    }
+
+    public String getExchangeId() {
+        return exchangeId;
+    }
+
+    public void setExchangeId(String exchangeId) {
+        this.exchangeId = exchangeId;
+    }
+
+    public String getInstrumentId() {
+        return instrumentId;
+    }
+
+    public void setInstrumentId(String instrumentId) {
+        this.instrumentId = instrumentId;
+    }
+}
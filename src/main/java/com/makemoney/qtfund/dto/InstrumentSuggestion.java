@@ -0,0 +1,46 @@
+package com.makemoney.qtfund.dto;
+
+/**
+ * 搜索联想的一条匹配结果
+ */
+public class InstrumentSuggestion {
+
+    private String exchangeId;
+
+    private String instrumentId;
+
+    private String instrumentName;
+
+    public InstrumentSuggestion() {
+    }
+
+    public InstrumentSuggestion(String exchangeId, String instrumentId, String instrumentName) {
+        this.exchangeId = exchangeId;
+        this.instrumentId = instrumentId;
+        this.instrumentName = instrumentName;
+    }
+
+    public String getExchangeId() {
+        return exchangeId;
+    }
+
+    public void setExchangeId(String exchangeId) {
+        this.exchangeId = exchangeId;
+    }
+
+    public String getInstrumentId() {
+        return instrumentId;
+    }
+
+    public void setInstrumentId(String instrumentId) {
+        this.instrumentId = instrumentId;
+    }
+
+    public String getInstrumentName() {
+        return instrumentName;
+    }
+
+    public void setInstrumentName(String instrumentName) {
+        this.instrumentName = instrumentName;
+    }
+}
@@ -0,0 +1,58 @@
+package com.makemoney.qtfund.dto;
+
+/**
+ * 排名重算结果
+ * days为处理的交易日数，rows为参与排名的行数，modified为实际发生变化的行数
+ */
+public class RankingRunResult {
+
+    private int days;
+
+    private long rows;
+
+    private long modified;
+
+    private long elapsedMillis;
+
+    public RankingRunResult() {
+    }
+
+    public RankingRunResult(int days, long rows, long modified, long elapsedMillis) {
+        this.days = days;
+        this.rows = rows;
+        this.modified = modified;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public void setDays(int days) {
+        this.days = days;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+
+    public void setModified(long modified) {
+        this.modified = modified;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+}
@@ -0,0 +1,162 @@
+package com.makemoney.qtfund.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 同一交易日前后两个快照之间的差异，用于SSE推送
+ * changes中每一项只包含发生变化的字段，changed列出这些字段名（变为null的字段不输出，但在changed中），
+ * 新增的行包含全部字段，删除的行removed为true
+ */
+public class SnapshotDiff {
+
+    private Date targetDate;
+
+    private long version;
+
+    private long previousVersion;
+
+    private List<RowChange> changes;
+
+    public SnapshotDiff() {
+    }
+
+    public SnapshotDiff(Date targetDate, long version, long previousVersion, List<RowChange> changes) {
+        this.targetDate = targetDate;
+        this.version = version;
+        this.previousVersion = previousVersion;
+        this.changes = changes;
+    }
+
+    public Date getTargetDate() {
+        return targetDate;
+    }
+
+    public void setTargetDate(Date targetDate) {
+        this.targetDate = targetDate;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getPreviousVersion() {
+        return previousVersion;
+    }
+
+    public void setPreviousVersion(long previousVersion) {
+        this.previousVersion = previousVersion;
+    }
+
+    public List<RowChange> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<RowChange> changes) {
+        this.changes = changes;
+    }
+
+    /**
+     * 一行的变化，值为null的字段不输出，是否变化以changed为准
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class RowChange {
+
+        private String exchangeId;
+
+        private String instrumentId;
+
+        private Double score;
+
+        private Integer ranking;
+
+        private Double scoreChange;
+
+        private Integer rankingChange;
+
+        private List<String> changed;
+
+        private Boolean removed;
+
+        public RowChange() {
+        }
+
+        public RowChange(String exchangeId, String instrumentId) {
+            this.exchangeId = exchangeId;
+            this.instrumentId = instrumentId;
+        }
+
+        public String getExchangeId() {
+            return exchangeId;
+        }
+
+        public void setExchangeId(String exchangeId) {
+            this.exchangeId = exchangeId;
+        }
+
+        public String getInstrumentId() {
+            return instrumentId;
+        }
+
+        public void setInstrumentId(String instrumentId) {
+            this.instrumentId = instrumentId;
+        }
+
+        public Double getScore() {
+            return score;
+        }
+
+        public void setScore(Double score) {
+            this.score = score;
+        }
+
+        public Integer getRanking() {
+            return ranking;
+        }
+
+        public void setRanking(Integer ranking) {
+            this.ranking = ranking;
+        }
+
+        public Double getScoreChange() {
+            return scoreChange;
+        }
+
+        public void setScoreChange(Double scoreChange) {
+            this.scoreChange = scoreChange;
+        }
+
+        public Integer getRankingChange() {
+            return rankingChange;
+        }
+
+        public void setRankingChange(Integer rankingChange) {
+            this.rankingChange = rankingChange;
+        }
+
+        /**
+         * 发生变化的字段名，删除的行为null
+         */
+        public List<String> getChanged() {
+            return changed;
+        }
+
+        public void setChanged(List<String> changed) {
+            this.changed = changed;
+        }
+
+        public Boolean getRemoved() {
+            return removed;
+        }
+
+        public void setRemoved(Boolean removed) {
+            this.removed = removed;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.makemoney.qtfund.dto;
+
+import java.util.Date;
+
+/**
+ * 最新快照的元信息
+ */
+public class SnapshotInfo {
+
+    private long version;
+
+    private Date builtAt;
+
+    private Date targetDate;
+
+    private int size;
+
+    public SnapshotInfo() {
+    }
+
+    public SnapshotInfo(long version, Date builtAt, Date targetDate, int size) {
+        this.version = version;
+        this.builtAt = builtAt;
+        this.targetDate = targetDate;
+        this.size = size;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Date getBuiltAt() {
+        return builtAt;
+    }
+
+    public void setBuiltAt(Date builtAt) {
+        this.builtAt = builtAt;
+    }
+
+    public Date getTargetDate() {
+        return targetDate;
+    }
+
+    public void setTargetDate(Date targetDate) {
+        this.targetDate = targetDate;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,152 @@
+package com.makemoney.qtfund.dto;
+
+import java.util.Date;
+
+/**
+ * 组合查询条件
+ * 所有非null的条件同时生效，范围条件均为闭区间；sort为字段名，前缀"-"表示降序
+ */
+public class StockAnalysisQuery {
+
+    private String exchangeId;
+
+    private String instrumentId;
+
+    private Date targetDate;
+
+    private Date from;
+
+    private Date to;
+
+    private Integer minRanking;
+
+    private Integer maxRanking;
+
+    private Double minScore;
+
+    private Double maxScore;
+
+    private Double minAmount;
+
+    private String name;
+
+    private String sort;
+
+    private Integer limit;
+
+    public StockAnalysisQuery() {
+    }
+
+    /**
+     * 是否包含任一过滤条件（不含sort和limit）
+     */
+    public boolean hasFilters() {
+        return exchangeId != null || instrumentId != null || targetDate != null || from != null || to != null
+                || minRanking != null || maxRanking != null || minScore != null || maxScore != null
+                || minAmount != null || (name != null && !name.isEmpty());
+    }
+
+    public String getExchangeId() {
+        return exchangeId;
+    }
+
+    public void setExchangeId(String exchangeId) {
+        this.exchangeId = exchangeId;
+    }
+
+    public String getInstrumentId() {
+        return instrumentId;
+    }
+
+    public void setInstrumentId(String instrumentId) {
+        this.instrumentId = instrumentId;
+    }
+
+    public Date getTargetDate() {
+        return targetDate;
+    }
+
+    public void setTargetDate(Date targetDate) {
+        this.targetDate = targetDate;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public void setFrom(Date from) {
+        this.from = from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    public void setTo(Date to) {
+        this.to = to;
+    }
+
+    public Integer getMinRanking() {
+        return minRanking;
+    }
+
+    public void setMinRanking(Integer minRanking) {
+        this.minRanking = minRanking;
+    }
+
+    public Integer getMaxRanking() {
+        return maxRanking;
+    }
+
+    public void setMaxRanking(Integer maxRanking) {
+        this.maxRanking = maxRanking;
+    }
+
+    public Double getMinScore() {
+        return minScore;
+    }
+
+    public void setMinScore(Double minScore) {
+        this.minScore = minScore;
+    }
+
+    public Double getMaxScore() {
+        return maxScore;
+    }
+
+    public void setMaxScore(Double maxScore) {
+        this.maxScore = maxScore;
+    }
+
+    public Double getMinAmount() {
+        return minAmount;
+    }
+
+    public void setMinAmount(Double minAmount) {
+        this.minAmount = minAmount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+}
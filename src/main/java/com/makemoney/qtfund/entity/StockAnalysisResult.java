@@ -1,6 +1,8 @@
 package com.makemoney.qtfund.entity;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -8,8 +10,19 @@ import java.util.Date;
 
 /**
  * 股票分析结果实体类
+ * 索引由StockAnalysisIndexInitializer在启动时创建
+ * _id由(exchange_id, instrument_id, target_date所在的交易日)生成（见StockAnalysisIds），自然键的唯一性由_id保证
+ * trade_date为target_date对应的yyyyMMdd整数，写入时填充，按日期的查询和索引均使用该字段
  */
 @Document(collection = "stock_analysis_result")
+@CompoundIndexes({
+        @CompoundIndex(name = "idx_exchange_instrument_trade_date",
+                def = "{'exchange_id': 1, 'instrument_id': 1, 'trade_date': 1}"),
+        @CompoundIndex(name = "idx_trade_date_ranking", def = "{'trade_date': 1, 'ranking': 1}"),
+        @CompoundIndex(name = "idx_trade_date_score", def = "{'trade_date': 1, 'score': 1}"),
+        @CompoundIndex(name = "idx_trade_date_exchange_instrument",
+                def = "{'trade_date': 1, 'exchange_id': 1, 'instrument_id': 1}")
+})
 public class StockAnalysisResult {
 
     @Id
@@ -45,6 +58,9 @@ public class StockAnalysisResult {
     @Field("target_date")
     private Date targetDate;
 
+    @Field("trade_date")
+    private Integer tradeDate;
+
     // 无参构造函数
     public StockAnalysisResult() {
     }
@@ -138,6 +154,14 @@ public class StockAnalysisResult {
         this.targetDate = targetDate;
     }
 
+    public Integer getTradeDate() {
+        return tradeDate;
+    }
+
+    public void setTradeDate(Integer tradeDate) {
+        this.tradeDate = tradeDate;
+    }
+
     @Override
     public String toString() {
         return "StockAnalysisResult{" +
@@ -152,6 +176,7 @@ public class StockAnalysisResult {
                 ", scoreChange=" + scoreChange +
                 ", rankingChange=" + rankingChange +
                 ", targetDate=" + targetDate +
+                ", tradeDate=" + tradeDate +
                 '}';
     }
 }
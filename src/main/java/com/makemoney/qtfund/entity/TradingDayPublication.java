@@ -0,0 +1,63 @@
+package com.makemoney.qtfund.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.Date;
+
+/**
+ * 交易日发布指针
+ * 分阶段发布模式下，/latest等读取最新日期的接口只返回tradeDate指向的交易日，
+ * 之后写入的新交易日在提交之前对这些接口不可见。version每次提交加一
+ */
+@Document(collection = "trading_day_publication")
+public class TradingDayPublication {
+
+    @Id
+    private String id;
+
+    @Field("trade_date")
+    private Integer tradeDate;
+
+    @Field("version")
+    private long version;
+
+    @Field("published_at")
+    private Date publishedAt;
+
+    public TradingDayPublication() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Integer getTradeDate() {
+        return tradeDate;
+    }
+
+    public void setTradeDate(Integer tradeDate) {
+        this.tradeDate = tradeDate;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Date getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(Date publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+}
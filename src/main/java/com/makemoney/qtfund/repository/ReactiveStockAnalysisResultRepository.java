@@ -0,0 +1,33 @@
+package com.makemoney.qtfund.repository;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 股票分析结果响应式Repository接口，基于MongoDB Reactive Streams驱动，供非阻塞读取使用
+ */
+@Repository
+public interface ReactiveStockAnalysisResultRepository extends ReactiveMongoRepository<StockAnalysisResult, String> {
+
+    /**
+     * 根据交易日(yyyyMMdd)查询
+     */
+    Flux<StockAnalysisResult> findByTradeDate(Integer tradeDate);
+
+    /**
+     * 查询单个合约在交易日区间[from, to]（yyyyMMdd）内的数据，按日期升序
+     */
+    @Query(value = "{ 'exchange_id': ?0, 'instrument_id': ?1, 'trade_date': { $gte: ?2, $lte: ?3 } }",
+            sort = "{ 'trade_date': 1 }")
+    Flux<StockAnalysisResult> findByExchangeIdAndInstrumentIdAndTradeDateRange(
+            String exchangeId, String instrumentId, int from, int to);
+
+    /**
+     * 获取最新交易日的一条记录
+     */
+    Mono<StockAnalysisResult> findFirstByOrderByTradeDateDesc();
+}
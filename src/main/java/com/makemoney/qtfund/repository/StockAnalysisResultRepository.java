@@ -2,11 +2,10 @@ package com.makemoney.qtfund.repository;
 
 import com.makemoney.qtfund.entity.StockAnalysisResult;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.util.Date;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * 股票分析结果Repository接口
@@ -20,15 +19,23 @@ public interface StockAnalysisResultRepository extends MongoRepository<StockAnal
     List<StockAnalysisResult> findByExchangeIdAndInstrumentId(String exchangeId, String instrumentId);
 
     /**
-     * 根据目标日期查询
+     * 根据交易日(yyyyMMdd)查询
      */
-    List<StockAnalysisResult> findByTargetDate(Date targetDate);
+    List<StockAnalysisResult> findByTradeDate(Integer tradeDate);
 
     /**
-     * 根据交易所代码、合约代码和目标日期查询
+     * 查询单个合约在交易日区间[from, to]（yyyyMMdd）内的数据，按日期升序
      */
-    Optional<StockAnalysisResult> findByExchangeIdAndInstrumentIdAndTargetDate(
-            String exchangeId, String instrumentId, Date targetDate);
+    @Query(value = "{ 'exchange_id': ?0, 'instrument_id': ?1, 'trade_date': { $gte: ?2, $lte: ?3 } }",
+            sort = "{ 'trade_date': 1 }")
+    List<StockAnalysisResult> findByExchangeIdAndInstrumentIdAndTradeDateRange(
+            String exchangeId, String instrumentId, int from, int to);
+
+    /**
+     * 查询交易日区间[from, to]（yyyyMMdd）内的全部数据
+     */
+    @Query("{ 'trade_date': { $gte: ?0, $lte: ?1 } }")
+    List<StockAnalysisResult> findByTradeDateRange(int from, int to);
 
     /**
      * 根据排名范围查询
@@ -41,9 +48,9 @@ public interface StockAnalysisResultRepository extends MongoRepository<StockAnal
     List<StockAnalysisResult> findByScoreBetween(Double minScore, Double maxScore);
 
     /**
-     * 获取最新日期的一条记录
+     * 获取最新交易日的一条记录
      */
-    StockAnalysisResult findFirstByOrderByTargetDateDesc();
+    StockAnalysisResult findFirstByOrderByTradeDateDesc();
 }
 
 
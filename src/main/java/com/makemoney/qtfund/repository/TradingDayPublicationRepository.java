@@ -0,0 +1,12 @@
+package com.makemoney.qtfund.repository;
+
+import com.makemoney.qtfund.entity.TradingDayPublication;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 交易日发布指针Repository接口
+ */
+@Repository
+public interface TradingDayPublicationRepository extends MongoRepository<TradingDayPublication, String> {
+}
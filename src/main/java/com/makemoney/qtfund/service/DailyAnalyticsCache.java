@@ -0,0 +1,259 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.dto.DailyAnalytics;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.repository.StockAnalysisResultRepository;
+import com.makemoney.qtfund.util.CacheMeters;
+import com.makemoney.qtfund.util.TradingDates;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 按交易日缓存横截面统计
+ * 每个日期的统计只在该日期的数据版本变化后重新计算一次，计算基于score等字段的基本类型数组
+ */
+@Component
+public class DailyAnalyticsCache {
+
+    /**
+     * 缓存中每个榜单保留的条数，请求的top不超过此值
+     */
+    public static final int MAX_TOP = 50;
+
+    private static final int MAX_CACHED_DAYS = 32;
+
+    private static final int HISTOGRAM_BINS = 20;
+
+    private static final int[] PERCENTILES = {1, 5, 10, 25, 50, 75, 90, 95, 99};
+
+    @Autowired
+    private LatestSnapshotCache latestSnapshotCache;
+
+    @Autowired
+    private StockAnalysisResultRepository repository;
+
+    @Autowired
+    private DataVersionTracker dataVersionTracker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CacheMeters meters;
+
+    private final Map<Integer, Cached> days = new ConcurrentHashMap<>();
+
+    private final ReentrantLock computeLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        meters = CacheMeters.register(meterRegistry, "daily-analytics");
+    }
+
+    /**
+     * 指定交易日的统计，数据版本未变化时直接返回缓存
+     */
+    public DailyAnalytics get(Date targetDate) {
+        Integer key = TradingDates.toDateKey(targetDate);
+        Cached cached = days.get(key);
+        if (cached != null && cached.version.equals(dataVersionTracker.getDateVersion(targetDate))) {
+            meters.hit();
+            return cached.analytics;
+        }
+        computeLock.lock();
+        try {
+            cached = days.get(key);
+            if (cached != null && cached.version.equals(dataVersionTracker.getDateVersion(targetDate))) {
+                meters.hit();
+                return cached.analytics;
+            }
+            meters.miss();
+            List<StockAnalysisResult> rows;
+            DataVersionTracker.Version version;
+            LatestSnapshotCache.Snapshot snapshot = latestSnapshotCache.get();
+            if (snapshot.getTargetDate() != null && key == TradingDates.toDateKey(snapshot.getTargetDate())) {
+                rows = snapshot.getRows();
+                version = snapshot.getDataVersion();
+            } else {
+                // 先取版本再读数据，计算期间如有写入，下次读取时版本不一致会重新计算
+                version = dataVersionTracker.getDateVersion(targetDate);
+                rows = repository.findByTradeDate(TradingDates.toDateKey(targetDate));
+            }
+            DailyAnalytics analytics = compute(targetDate, rows);
+            if (!days.containsKey(key) && days.size() >= MAX_CACHED_DAYS) {
+                days.remove(Collections.min(days.keySet()));
+            }
+            days.put(key, new Cached(version, analytics));
+            return analytics;
+        } finally {
+            computeLock.unlock();
+        }
+    }
+
+    private static DailyAnalytics compute(Date targetDate, List<StockAnalysisResult> rows) {
+        DailyAnalytics analytics = new DailyAnalytics();
+        analytics.setTargetDate(targetDate);
+        analytics.setCount(rows.size());
+        analytics.setTopByScore(top(rows, StockAnalysisResult::getScore, true));
+        analytics.setBottomByScore(top(rows, StockAnalysisResult::getScore, false));
+        analytics.setTopRankingGainers(top(rows, StockAnalysisResult::getRankingChange, true));
+        analytics.setTopRankingLosers(top(rows, StockAnalysisResult::getRankingChange, false));
+        analytics.setTopByAmount(top(rows, StockAnalysisResult::getAmount, true));
+        analytics.setBottomByAmount(top(rows, StockAnalysisResult::getAmount, false));
+
+        double[] scores = sortedScores(rows);
+        analytics.setScoreStats(scoreStats(scores));
+        analytics.setScoreHistogram(histogram(scores));
+
+        Map<String, List<StockAnalysisResult>> byExchange = new TreeMap<>();
+        for (StockAnalysisResult row : rows) {
+            if (row.getExchangeId() != null) {
+                byExchange.computeIfAbsent(row.getExchangeId(), k -> new ArrayList<>()).add(row);
+            }
+        }
+        List<DailyAnalytics.ExchangeStats> exchanges = new ArrayList<>();
+        byExchange.forEach((exchangeId, exchangeRows) -> {
+            double[] exchangeScores = sortedScores(exchangeRows);
+            DailyAnalytics.ExchangeStats stats = new DailyAnalytics.ExchangeStats();
+            stats.setExchangeId(exchangeId);
+            stats.setCount(exchangeRows.size());
+            stats.setMeanScore(exchangeScores.length > 0 ? mean(exchangeScores) : null);
+            stats.setMedianScore(exchangeScores.length > 0 ? percentile(exchangeScores, 50) : null);
+            double totalAmount = 0;
+            for (StockAnalysisResult row : exchangeRows) {
+                if (row.getAmount() != null && !row.getAmount().isNaN()) {
+                    totalAmount += row.getAmount();
+                }
+            }
+            stats.setTotalAmount(totalAmount);
+            exchanges.add(stats);
+        });
+        analytics.setExchanges(exchanges);
+        return analytics;
+    }
+
+    /**
+     * 按指定字段取前MAX_TOP条，字段为null的行不参与
+     */
+    private static <T extends Comparable<T>> List<DailyAnalytics.Mover> top(
+            List<StockAnalysisResult> rows, Function<StockAnalysisResult, T> field, boolean descending) {
+        Comparator<StockAnalysisResult> order = Comparator.comparing(field);
+        if (descending) {
+            order = order.reversed();
+        }
+        List<DailyAnalytics.Mover> movers = new ArrayList<>(MAX_TOP);
+        rows.stream()
+                .filter(row -> field.apply(row) != null)
+                .sorted(order.thenComparing(StockAnalysisResult::getInstrumentId,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .limit(MAX_TOP)
+                .forEach(row -> movers.add(new DailyAnalytics.Mover(row.getExchangeId(), row.getInstrumentId(),
+                        row.getInstrumentName(), row.getScore(), row.getRanking(), row.getRankingChange(),
+                        row.getAmount())));
+        return List.copyOf(movers);
+    }
+
+    private static double[] sortedScores(List<StockAnalysisResult> rows) {
+        double[] scores = new double[rows.size()];
+        int count = 0;
+        for (StockAnalysisResult row : rows) {
+            Double score = row.getScore();
+            if (score != null && !score.isNaN()) {
+                scores[count++] = score;
+            }
+        }
+        double[] sorted = Arrays.copyOf(scores, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static DailyAnalytics.ScoreStats scoreStats(double[] sorted) {
+        DailyAnalytics.ScoreStats stats = new DailyAnalytics.ScoreStats();
+        stats.setCount(sorted.length);
+        if (sorted.length == 0) {
+            stats.setPercentiles(Map.of());
+            return stats;
+        }
+        double mean = mean(sorted);
+        double squares = 0;
+        for (double score : sorted) {
+            squares += (score - mean) * (score - mean);
+        }
+        stats.setMin(sorted[0]);
+        stats.setMax(sorted[sorted.length - 1]);
+        stats.setMean(mean);
+        stats.setStdDev(Math.sqrt(squares / sorted.length));
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (int p : PERCENTILES) {
+            percentiles.put("p" + p, percentile(sorted, p));
+        }
+        stats.setPercentiles(percentiles);
+        return stats;
+    }
+
+    private static DailyAnalytics.Histogram histogram(double[] sorted) {
+        if (sorted.length == 0) {
+            return new DailyAnalytics.Histogram(new double[0], new int[0]);
+        }
+        double min = sorted[0];
+        double max = sorted[sorted.length - 1];
+        if (min == max) {
+            return new DailyAnalytics.Histogram(new double[]{min, max}, new int[]{sorted.length});
+        }
+        double width = (max - min) / HISTOGRAM_BINS;
+        double[] edges = new double[HISTOGRAM_BINS + 1];
+        for (int i = 0; i <= HISTOGRAM_BINS; i++) {
+            edges[i] = min + width * i;
+        }
+        edges[HISTOGRAM_BINS] = max;
+        int[] counts = new int[HISTOGRAM_BINS];
+        for (double score : sorted) {
+            counts[Math.min((int) ((score - min) / width), HISTOGRAM_BINS - 1)]++;
+        }
+        return new DailyAnalytics.Histogram(edges, counts);
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * 线性插值的分位数，sorted须为升序且非空
+     */
+    private static double percentile(double[] sorted, int p) {
+        double position = p / 100.0 * (sorted.length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = Math.min(lower + 1, sorted.length - 1);
+        return sorted[lower] + (sorted[upper] - sorted[lower]) * (position - lower);
+    }
+
+    private static final class Cached {
+
+        private final DataVersionTracker.Version version;
+
+        private final DailyAnalytics analytics;
+
+        Cached(DataVersionTracker.Version version, DailyAnalytics analytics) {
+            this.version = version;
+            this.analytics = analytics;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.util.TradingDates;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 数据版本跟踪
+ * 按交易日（yyyyMMdd）和按合约分别记录写入次数和最后修改时间，用于生成ETag/Last-Modified，
+ * 条件请求可以在不查询数据库的情况下判断数据是否变化。
+ * 版本只保存在内存中，epoch在启动和全部删除时更新，使之前发出的ETag全部失效
+ */
+@Component
+public class DataVersionTracker {
+
+    private volatile long epoch = System.currentTimeMillis();
+
+    private final Map<Integer, Version> dateVersions = new ConcurrentHashMap<>();
+
+    private final Map<String, Version> instrumentVersions = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次写入，参数为null的维度不记录
+     */
+    public void onWrite(Date targetDate, String exchangeId, String instrumentId) {
+        Version written = new Version(epoch, 1, System.currentTimeMillis());
+        if (targetDate != null) {
+            dateVersions.merge(TradingDates.toDateKey(targetDate), written, Version::next);
+        }
+        if (exchangeId != null && instrumentId != null) {
+            instrumentVersions.merge(instrumentKey(exchangeId, instrumentId), written, Version::next);
+        }
+    }
+
+    /**
+     * 全部数据变化（如删除所有）时调用
+     */
+    public void onWriteAll() {
+        dateVersions.clear();
+        instrumentVersions.clear();
+        epoch = Math.max(System.currentTimeMillis(), epoch + 1);
+    }
+
+    /**
+     * 指定交易日的当前版本
+     */
+    public Version getDateVersion(Date targetDate) {
+        if (targetDate == null) {
+            return initialVersion();
+        }
+        return dateVersions.getOrDefault(TradingDates.toDateKey(targetDate), initialVersion());
+    }
+
+    /**
+     * 指定合约的当前版本
+     */
+    public Version getInstrumentVersion(String exchangeId, String instrumentId) {
+        return instrumentVersions.getOrDefault(instrumentKey(exchangeId, instrumentId), initialVersion());
+    }
+
+    private Version initialVersion() {
+        long currentEpoch = epoch;
+        return new Version(currentEpoch, 0, currentEpoch);
+    }
+
+    /**
+     * 生成强ETag，scope区分资源，variant区分同一资源的不同表示（如压缩编码）
+     */
+    public String eTag(String scope, Version version, String variant) {
+        StringBuilder eTag = new StringBuilder("\"")
+                .append(Long.toString(version.epoch, 36)).append('-')
+                .append(scope).append('-')
+                .append(version.getCounter());
+        if (variant != null) {
+            eTag.append('-').append(variant);
+        }
+        return eTag.append('"').toString();
+    }
+
+    private static String instrumentKey(String exchangeId, String instrumentId) {
+        return exchangeId + ":" + instrumentId;
+    }
+
+    /**
+     * 版本号及其最后修改时间
+     */
+    public static class Version {
+
+        private final long epoch;
+
+        private final long counter;
+
+        private final long lastModified;
+
+        Version(long epoch, long counter, long lastModified) {
+            this.epoch = epoch;
+            this.counter = counter;
+            this.lastModified = lastModified;
+        }
+
+        private static Version next(Version current, Version written) {
+            return new Version(current.epoch, current.counter + 1, written.lastModified);
+        }
+
+        public long getCounter() {
+            return counter;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Version other)) {
+                return false;
+            }
+            return epoch == other.epoch && counter == other.counter;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(epoch) * 31 + Long.hashCode(counter);
+        }
+    }
+}
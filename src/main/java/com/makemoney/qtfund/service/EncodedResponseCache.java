@@ -0,0 +1,279 @@
+package com.makemoney.qtfund.service;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.repository.StockAnalysisResultRepository;
+import com.makemoney.qtfund.util.CacheMeters;
+import com.makemoney.qtfund.util.TradingDates;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 按交易日缓存序列化后的响应字节
+ * 每个日期的JSON只序列化一次，同时预先生成gzip和brotli压缩版本，请求时按Accept-Encoding直接写出字节
+ */
+@Component
+public class EncodedResponseCache {
+
+    /**
+     * 最多缓存的历史日期数，超出时淘汰最早的日期
+     */
+    private static final int MAX_CACHED_DAYS = 32;
+
+    private static final int BROTLI_QUALITY = 9;
+
+    private static final boolean BROTLI_AVAILABLE = Brotli4jLoader.isAvailable();
+
+    @Autowired
+    private LatestSnapshotCache latestSnapshotCache;
+
+    @Autowired
+    private StockAnalysisResultRepository repository;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private DataVersionTracker dataVersionTracker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CacheMeters meters;
+
+    private volatile EncodedSnapshot latest;
+
+    private final Map<Integer, EncodedBody> days = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ReentrantLock encodeLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        meters = CacheMeters.register(meterRegistry, "encoded-response");
+    }
+
+    /**
+     * 最新交易日的响应字节，随LatestSnapshotCache的快照一起更新
+     */
+    public EncodedBody getLatest() {
+        LatestSnapshotCache.Snapshot snapshot = latestSnapshotCache.get();
+        EncodedSnapshot current = latest;
+        if (current != null && current.snapshot == snapshot) {
+            meters.hit();
+            return current.body;
+        }
+        encodeLock.lock();
+        try {
+            current = latest;
+            if (current != null && current.snapshot == snapshot) {
+                meters.hit();
+                return current.body;
+            }
+            meters.miss();
+            EncodedBody body = encode(snapshot.getRows(), snapshot.getTargetDate(), snapshot.getDataVersion());
+            latest = new EncodedSnapshot(snapshot, body);
+            return body;
+        } finally {
+            encodeLock.unlock();
+        }
+    }
+
+    /**
+     * 指定交易日的响应字节，未命中时从数据库加载一次
+     */
+    public EncodedBody getDay(Date targetDate) {
+        LatestSnapshotCache.Snapshot snapshot = latestSnapshotCache.get();
+        Integer key = TradingDates.toDateKey(targetDate);
+        if (snapshot.getTargetDate() != null && key == TradingDates.toDateKey(snapshot.getTargetDate())) {
+            return getLatest();
+        }
+        EncodedBody body = days.get(key);
+        if (body != null) {
+            meters.hit();
+            return body;
+        }
+        encodeLock.lock();
+        try {
+            body = days.get(key);
+            if (body != null) {
+                meters.hit();
+                return body;
+            }
+            meters.miss();
+            long expectedGeneration = generation.get();
+            DataVersionTracker.Version dataVersion = dataVersionTracker.getDateVersion(targetDate);
+            body = encode(repository.findByTradeDate(TradingDates.toDateKey(targetDate)), targetDate, dataVersion);
+            // 加载期间该日期如有写入，本次结果不放入缓存
+            if (generation.get() == expectedGeneration) {
+                if (days.size() >= MAX_CACHED_DAYS) {
+                    days.remove(Collections.min(days.keySet()));
+                }
+                days.put(key, body);
+            }
+            return body;
+        } finally {
+            encodeLock.unlock();
+        }
+    }
+
+    /**
+     * 写入某一日期后调用，targetDate为null时清空全部
+     */
+    public void evict(Date targetDate) {
+        generation.incrementAndGet();
+        if (targetDate == null) {
+            days.clear();
+        } else {
+            days.remove(TradingDates.toDateKey(targetDate));
+        }
+    }
+
+    private EncodedBody encode(List<StockAnalysisResult> rows, Date targetDate, DataVersionTracker.Version dataVersion) {
+        byte[] json = jsonMapper.writeValueAsBytes(rows);
+        return new EncodedBody(targetDate, dataVersion, json, gzip(json), BROTLI_AVAILABLE ? brotli(json) : null);
+    }
+
+    /**
+     * 根据Accept-Encoding选择编码，返回br、gzip或null（不压缩）
+     * 只取决于请求头，因此可以在读取响应体之前确定ETag
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (BROTLI_AVAILABLE && accepts(acceptEncoding, "br")) {
+            return "br";
+        }
+        if (accepts(acceptEncoding, "gzip")) {
+            return "gzip";
+        }
+        return null;
+    }
+
+    private static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            if (!tokens[0].trim().equalsIgnoreCase(coding)) {
+                continue;
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=") && isZeroQuality(param.substring(2))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isZeroQuality(String value) {
+        try {
+            return Double.parseDouble(value) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] brotli(byte[] data) {
+        try {
+            return Encoder.compress(data, new Encoder.Parameters().setQuality(BROTLI_QUALITY));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class EncodedSnapshot {
+
+        private final LatestSnapshotCache.Snapshot snapshot;
+
+        private final EncodedBody body;
+
+        EncodedSnapshot(LatestSnapshotCache.Snapshot snapshot, EncodedBody body) {
+            this.snapshot = snapshot;
+            this.body = body;
+        }
+    }
+
+    /**
+     * 同一份JSON的原始字节及其压缩版本，brotli不可用时为null
+     */
+    public static class EncodedBody {
+
+        private final Date targetDate;
+
+        private final DataVersionTracker.Version dataVersion;
+
+        private final byte[] identity;
+
+        private final byte[] gzip;
+
+        private final byte[] brotli;
+
+        EncodedBody(Date targetDate, DataVersionTracker.Version dataVersion,
+                    byte[] identity, byte[] gzip, byte[] brotli) {
+            this.targetDate = targetDate;
+            this.dataVersion = dataVersion;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.brotli = brotli;
+        }
+
+        public Date getTargetDate() {
+            return targetDate;
+        }
+
+        /**
+         * 序列化时该日期的数据版本
+         */
+        public DataVersionTracker.Version getDataVersion() {
+            return dataVersion;
+        }
+
+        /**
+         * 返回指定编码的字节，encoding为null时返回未压缩的JSON
+         */
+        public byte[] bytes(String encoding) {
+            if ("br".equals(encoding)) {
+                return brotli;
+            }
+            if ("gzip".equals(encoding)) {
+                return gzip;
+            }
+            return identity;
+        }
+    }
+}
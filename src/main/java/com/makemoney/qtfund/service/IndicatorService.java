@@ -0,0 +1,127 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.dto.IndicatorSeries;
+import com.makemoney.qtfund.dto.IndicatorSnapshot;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.util.TradingDates;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 均线与趋势指标Service层
+ * 基于InstrumentHistoryIndex的列式历史计算MA5/10/20/60，每个点的均线由前缀和O(1)得到，
+ * 规则与前端updateChartAndMetrics一致
+ */
+@Service
+public class IndicatorService {
+
+    @Autowired
+    private InstrumentHistoryIndex instrumentHistoryIndex;
+
+    @Autowired
+    private StockAnalysisResultService stockAnalysisResultService;
+
+    /**
+     * 单个合约在[from, to]区间内的均线序列，from/to为null时不限制
+     */
+    public IndicatorSeries getIndicators(String exchangeId, String instrumentId, Date from, Date to) {
+        InstrumentHistoryIndex.Series series = instrumentHistoryIndex.get(exchangeId, instrumentId);
+        int start = from != null ? series.lowerBound(TradingDates.toDateKey(from)) : 0;
+        int end = to != null ? series.upperBound(TradingDates.toDateKey(to)) : series.size();
+        end = Math.max(start, end);
+
+        IndicatorSeries result = new IndicatorSeries();
+        result.setExchangeId(exchangeId);
+        result.setInstrumentId(instrumentId);
+        result.setInstrumentName(series.getInstrumentName());
+        result.setDates(Arrays.copyOfRange(series.getDates(), start, end));
+        result.setClose(Arrays.copyOfRange(series.getClose(), start, end));
+        result.setMa5(movingAverages(series, start, end, 5));
+        result.setMa10(movingAverages(series, start, end, 10));
+        result.setMa20(movingAverages(series, start, end, 20));
+        result.setMa60(movingAverages(series, start, end, 60));
+        result.setLatest(end > start ? snapshot(series, end - 1) : null);
+        return result;
+    }
+
+    /**
+     * 全市场在某一交易日的均线状态，targetDate为null时取最新日期
+     * bullishOnly为true时只返回多头排列的合约
+     */
+    public List<IndicatorSnapshot> getUniverse(Date targetDate, boolean bullishOnly) {
+        List<StockAnalysisResult> rows;
+        if (targetDate == null) {
+            LatestSnapshotCache.Snapshot latest = stockAnalysisResultService.getLatestSnapshot();
+            targetDate = latest.getTargetDate();
+            rows = latest.getRows();
+        } else {
+            rows = stockAnalysisResultService.findByTargetDate(targetDate);
+        }
+        if (targetDate == null) {
+            return List.of();
+        }
+
+        List<String[]> instruments = new ArrayList<>(rows.size());
+        for (StockAnalysisResult row : rows) {
+            instruments.add(new String[]{row.getExchangeId(), row.getInstrumentId()});
+        }
+        int dateKey = TradingDates.toDateKey(targetDate);
+        List<IndicatorSnapshot> result = new ArrayList<>();
+        for (InstrumentHistoryIndex.Series series : instrumentHistoryIndex.getAll(instruments)) {
+            int index = series.upperBound(dateKey) - 1;
+            if (index < 0 || series.getDates()[index] != dateKey) {
+                continue;
+            }
+            IndicatorSnapshot snapshot = snapshot(series, index);
+            if (!bullishOnly || snapshot.isBullish()) {
+                result.add(snapshot);
+            }
+        }
+        return result;
+    }
+
+    private static double[] movingAverages(InstrumentHistoryIndex.Series series, int start, int end, int window) {
+        double[] result = new double[end - start];
+        for (int i = start; i < end; i++) {
+            result[i - start] = series.movingAverage(i, window);
+        }
+        return result;
+    }
+
+    private static IndicatorSnapshot snapshot(InstrumentHistoryIndex.Series series, int index) {
+        double close = series.getClose()[index];
+        double ma5 = series.movingAverage(index, 5);
+        double ma10 = series.movingAverage(index, 10);
+        double ma20 = series.movingAverage(index, 20);
+        double ma60 = series.movingAverage(index, 60);
+
+        IndicatorSnapshot snapshot = new IndicatorSnapshot();
+        snapshot.setExchangeId(series.getExchangeId());
+        snapshot.setInstrumentId(series.getInstrumentId());
+        snapshot.setInstrumentName(series.getInstrumentName());
+        snapshot.setDate(series.getDates()[index]);
+        snapshot.setClose(boxed(close));
+        snapshot.setMa5(boxed(ma5));
+        snapshot.setMa10(boxed(ma10));
+        snapshot.setMa20(boxed(ma20));
+        snapshot.setMa60(boxed(ma60));
+        // 与NaN比较恒为false，数据不足时各标志均为false
+        snapshot.setAboveMa5(close > ma5);
+        snapshot.setAboveMa10(close > ma10);
+        snapshot.setAboveMa20(close > ma20);
+        snapshot.setAboveMa60(close > ma60);
+        snapshot.setUpTrend(ma20 > ma60);
+        snapshot.setBullish(close > ma20 && ma20 > ma60);
+        snapshot.setTrendSummary(snapshot.isBullish() ? "多头排列，趋势向上" : "趋势震荡或回调中");
+        return snapshot;
+    }
+
+    private static Double boxed(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -0,0 +1,436 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.repository.StockAnalysisResultRepository;
+import com.makemoney.qtfund.util.CacheMeters;
+import com.makemoney.qtfund.util.TradingDates;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 按合约组织的列式历史索引
+ * 每个合约的历史按日期升序保存在基本类型数组中（日期为yyyyMMdd整数），读取时只复制数组区间，
+ * 不再为每一行创建对象。首次访问某个合约时从数据库加载，之后随写入增量更新。
+ * 最多保留max-instruments个合约，超出时淘汰最久未访问的合约；没有数据的合约不放入索引
+ */
+@Component
+public class InstrumentHistoryIndex {
+
+    /**
+     * 批量加载时每次查询的合约数
+     */
+    private static final int LOAD_BATCH_SIZE = 100;
+
+    @Autowired
+    private StockAnalysisResultRepository repository;
+
+    @Autowired
+    private DataVersionTracker dataVersionTracker;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CacheMeters meters;
+
+    /**
+     * 索引中最多保留的合约数
+     */
+    @Value("${qtfund.history-index.max-instruments:10000}")
+    private int maxInstruments;
+
+    /**
+     * 按访问顺序排列，所有访问都在lock中进行
+     */
+    private final LinkedHashMap<String, Series> seriesByInstrument = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Series> eldest) {
+            return size() > maxInstruments;
+        }
+    };
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        meters = CacheMeters.register(meterRegistry, "instrument-history");
+    }
+
+    /**
+     * 获取合约的完整历史，未加载时从数据库加载
+     */
+    public Series get(String exchangeId, String instrumentId) {
+        String key = key(exchangeId, instrumentId);
+        Series series = cached(key);
+        if (series != null) {
+            meters.hit();
+            return series;
+        }
+        meters.miss();
+        // 先取版本再读数据；加载期间如有写入，结果不放入索引，由下一次读取重新加载
+        DataVersionTracker.Version version = dataVersionTracker.getInstrumentVersion(exchangeId, instrumentId);
+        Series loaded = Series.of(exchangeId, instrumentId,
+                repository.findByExchangeIdAndInstrumentId(exchangeId, instrumentId));
+        return install(key, loaded, version);
+    }
+
+    /**
+     * 批量获取多个合约的历史，未加载的合约按LOAD_BATCH_SIZE一组用一次$in查询加载
+     * instruments中每个元素为{exchangeId, instrumentId}，返回顺序与之一致
+     */
+    public List<Series> getAll(List<String[]> instruments) {
+        Map<String, Series> result = new LinkedHashMap<>();
+        List<String[]> missing = new ArrayList<>();
+        for (String[] instrument : instruments) {
+            String key = key(instrument[0], instrument[1]);
+            Series series = cached(key);
+            result.put(key, series);
+            if (series == null) {
+                missing.add(instrument);
+            }
+        }
+        meters.hits(instruments.size() - missing.size());
+        meters.misses(missing.size());
+        for (int from = 0; from < missing.size(); from += LOAD_BATCH_SIZE) {
+            List<String[]> chunk = missing.subList(from, Math.min(from + LOAD_BATCH_SIZE, missing.size()));
+            loadChunk(chunk).forEach(result::put);
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    private Map<String, Series> loadChunk(List<String[]> chunk) {
+        Map<String, DataVersionTracker.Version> versions = new HashMap<>();
+        for (String[] instrument : chunk) {
+            versions.put(key(instrument[0], instrument[1]),
+                    dataVersionTracker.getInstrumentVersion(instrument[0], instrument[1]));
+        }
+        Set<String> exchangeIds = chunk.stream().map(instrument -> instrument[0]).collect(Collectors.toSet());
+        Set<String> instrumentIds = chunk.stream().map(instrument -> instrument[1]).collect(Collectors.toSet());
+        Query query = Query.query(Criteria.where("exchangeId").in(exchangeIds).and("instrumentId").in(instrumentIds));
+        Map<String, List<StockAnalysisResult>> rowsByKey = new HashMap<>();
+        for (StockAnalysisResult row : mongoTemplate.find(query, StockAnalysisResult.class)) {
+            String key = key(row.getExchangeId(), row.getInstrumentId());
+            // 两个$in的组合可能带出不在请求中的合约，这里过滤掉
+            if (versions.containsKey(key)) {
+                rowsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+            }
+        }
+        Map<String, Series> loaded = new HashMap<>();
+        for (String[] instrument : chunk) {
+            String key = key(instrument[0], instrument[1]);
+            Series series = Series.of(instrument[0], instrument[1], rowsByKey.getOrDefault(key, List.of()));
+            loaded.put(key, install(key, series, versions.get(key)));
+        }
+        return loaded;
+    }
+
+    private Series cached(String key) {
+        lock.lock();
+        try {
+            return seriesByInstrument.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 加载期间合约没有写入时才放入索引，否则只返回给本次调用；
+     * 没有数据的合约不放入索引，避免查询不存在的合约使索引无限增长
+     */
+    private Series install(String key, Series loaded, DataVersionTracker.Version version) {
+        if (loaded.size() == 0) {
+            return loaded;
+        }
+        lock.lock();
+        try {
+            Series existing = seriesByInstrument.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            String[] parts = key.split(":", 2);
+            DataVersionTracker.Version current = dataVersionTracker.getInstrumentVersion(parts[0], parts[1]);
+            if (current.getCounter() == version.getCounter()) {
+                seriesByInstrument.put(key, loaded);
+            }
+            return loaded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写入一行后调用，已加载的合约就地合并该行
+     */
+    public void onUpsert(StockAnalysisResult row) {
+        if (row.getExchangeId() == null || row.getInstrumentId() == null || row.getTargetDate() == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            seriesByInstrument.computeIfPresent(key(row.getExchangeId(), row.getInstrumentId()),
+                    (k, series) -> series.with(row));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 合约的历史发生了无法增量合并的变化（删除、修改键）时调用，下次读取重新加载
+     */
+    public void invalidate(String exchangeId, String instrumentId) {
+        if (exchangeId == null || instrumentId == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            seriesByInstrument.remove(key(exchangeId, instrumentId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            seriesByInstrument.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String key(String exchangeId, String instrumentId) {
+        return exchangeId + ":" + instrumentId;
+    }
+
+    /**
+     * 单个合约按日期升序的不可变列式历史
+     * 缺失的close/amount/score为NaN，缺失的ranking为0
+     */
+    public static class Series {
+
+        private final String exchangeId;
+
+        private final String instrumentId;
+
+        private final String instrumentName;
+
+        private final int[] dates;
+
+        private final double[] close;
+
+        private final double[] amount;
+
+        private final double[] score;
+
+        private final int[] ranking;
+
+        /**
+         * close的前缀和及NaN个数的前缀和，首次计算均线时生成
+         */
+        private volatile double[] closePrefixSum;
+
+        private volatile int[] closeNaNPrefixCount;
+
+        private Series(String exchangeId, String instrumentId, String instrumentName, int[] dates,
+                       double[] close, double[] amount, double[] score, int[] ranking) {
+            this.exchangeId = exchangeId;
+            this.instrumentId = instrumentId;
+            this.instrumentName = instrumentName;
+            this.dates = dates;
+            this.close = close;
+            this.amount = amount;
+            this.score = score;
+            this.ranking = ranking;
+        }
+
+        static Series of(String exchangeId, String instrumentId, List<StockAnalysisResult> rows) {
+            StockAnalysisResult[] sorted = rows.stream()
+                    .filter(row -> row.getTargetDate() != null)
+                    .sorted(Comparator.comparing(StockAnalysisResult::getTargetDate))
+                    .toArray(StockAnalysisResult[]::new);
+            int n = sorted.length;
+            int[] dates = new int[n];
+            double[] close = new double[n];
+            double[] amount = new double[n];
+            double[] score = new double[n];
+            int[] ranking = new int[n];
+            String instrumentName = null;
+            int size = 0;
+            for (StockAnalysisResult row : sorted) {
+                int dateKey = TradingDates.toDateKey(row);
+                // 同一交易日重复的记录保留最后一条
+                int i = size > 0 && dates[size - 1] == dateKey ? size - 1 : size++;
+                dates[i] = dateKey;
+                close[i] = valueOf(row.getClose());
+                amount[i] = valueOf(row.getAmount());
+                score[i] = valueOf(row.getScore());
+                ranking[i] = row.getRanking() != null ? row.getRanking() : 0;
+                if (row.getInstrumentName() != null) {
+                    instrumentName = row.getInstrumentName();
+                }
+            }
+            return new Series(exchangeId, instrumentId, instrumentName, Arrays.copyOf(dates, size),
+                    Arrays.copyOf(close, size), Arrays.copyOf(amount, size), Arrays.copyOf(score, size),
+                    Arrays.copyOf(ranking, size));
+        }
+
+        /**
+         * 返回合并一行后的新序列，已有同日数据时覆盖
+         */
+        Series with(StockAnalysisResult row) {
+            int dateKey = TradingDates.toDateKey(row);
+            int pos = Arrays.binarySearch(dates, dateKey);
+            int[] newDates;
+            double[] newClose;
+            double[] newAmount;
+            double[] newScore;
+            int[] newRanking;
+            int i;
+            if (pos >= 0) {
+                i = pos;
+                newDates = dates;
+                newClose = close.clone();
+                newAmount = amount.clone();
+                newScore = score.clone();
+                newRanking = ranking.clone();
+            } else {
+                i = -pos - 1;
+                newDates = insert(dates, i, dateKey);
+                newClose = insert(close, i);
+                newAmount = insert(amount, i);
+                newScore = insert(score, i);
+                newRanking = insert(ranking, i, 0);
+            }
+            newClose[i] = valueOf(row.getClose());
+            newAmount[i] = valueOf(row.getAmount());
+            newScore[i] = valueOf(row.getScore());
+            newRanking[i] = row.getRanking() != null ? row.getRanking() : 0;
+            boolean latest = i == newDates.length - 1;
+            String name = latest && row.getInstrumentName() != null ? row.getInstrumentName() : instrumentName;
+            return new Series(exchangeId, instrumentId, name, newDates, newClose, newAmount, newScore, newRanking);
+        }
+
+        /**
+         * 以index为最后一天、window天的收盘价均线，O(1)；天数不足或窗口内有缺失时返回NaN
+         */
+        public double movingAverage(int index, int window) {
+            if (index + 1 < window) {
+                return Double.NaN;
+            }
+            double[] prefixSum = closePrefixSum;
+            int[] nanPrefixCount = closeNaNPrefixCount;
+            if (prefixSum == null || nanPrefixCount == null) {
+                nanPrefixCount = new int[close.length + 1];
+                prefixSum = new double[close.length + 1];
+                for (int i = 0; i < close.length; i++) {
+                    boolean missing = Double.isNaN(close[i]);
+                    nanPrefixCount[i + 1] = nanPrefixCount[i] + (missing ? 1 : 0);
+                    prefixSum[i + 1] = prefixSum[i] + (missing ? 0 : close[i]);
+                }
+                closeNaNPrefixCount = nanPrefixCount;
+                closePrefixSum = prefixSum;
+            }
+            int start = index + 1 - window;
+            if (nanPrefixCount[index + 1] - nanPrefixCount[start] > 0) {
+                return Double.NaN;
+            }
+            return (prefixSum[index + 1] - prefixSum[start]) / window;
+        }
+
+        /**
+         * 第一个日期不早于dateKey的下标
+         */
+        public int lowerBound(int dateKey) {
+            int pos = Arrays.binarySearch(dates, dateKey);
+            return pos >= 0 ? pos : -pos - 1;
+        }
+
+        /**
+         * 第一个日期晚于dateKey的下标
+         */
+        public int upperBound(int dateKey) {
+            int pos = Arrays.binarySearch(dates, dateKey);
+            return pos >= 0 ? pos + 1 : -pos - 1;
+        }
+
+        public int size() {
+            return dates.length;
+        }
+
+        public String getExchangeId() {
+            return exchangeId;
+        }
+
+        public String getInstrumentId() {
+            return instrumentId;
+        }
+
+        public String getInstrumentName() {
+            return instrumentName;
+        }
+
+        /**
+         * 以下数组为内部存储，调用方不得修改
+         */
+        public int[] getDates() {
+            return dates;
+        }
+
+        public double[] getClose() {
+            return close;
+        }
+
+        public double[] getAmount() {
+            return amount;
+        }
+
+        public double[] getScore() {
+            return score;
+        }
+
+        public int[] getRanking() {
+            return ranking;
+        }
+
+        private static double valueOf(Double value) {
+            return value != null ? value : Double.NaN;
+        }
+
+        private static int[] insert(int[] array, int index, int value) {
+            int[] result = new int[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+
+        private static double[] insert(double[] array, int index) {
+            double[] result = new double[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.dto.InstrumentSuggestion;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.util.CacheMeters;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 合约代码和名称的搜索索引
+ * 代码按字典序排成数组，前缀查询用二分定位；名称和代码的单字/双字n-gram建立倒排表，
+ * 子串查询取最短的倒排表逐个校验。首次查询时用一次聚合加载全部合约，之后随写入增量更新，
+ * 查询不访问数据库
+ */
+@Component
+public class InstrumentSearchIndex {
+
+    /**
+     * 单次查询最多返回的条数
+     */
+    public static final int MAX_SUGGESTIONS = 50;
+
+    private static final int RANK_CODE_EXACT = 0;
+
+    private static final int RANK_CODE_PREFIX = 1;
+
+    private static final int RANK_NAME_PREFIX = 2;
+
+    private static final int RANK_NAME_CONTAINS = 3;
+
+    private static final int RANK_CODE_CONTAINS = 4;
+
+    private static final Comparator<Entry> CODE_ORDER = Comparator
+            .comparing((Entry entry) -> entry.lowerCode)
+            .thenComparing(entry -> entry.exchangeId);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CacheMeters meters;
+
+    private volatile Index index;
+
+    /**
+     * 每次写入或清空加一，用于丢弃加载期间被写入打断的索引
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        meters = CacheMeters.register(meterRegistry, "instrument-search");
+    }
+
+    /**
+     * 按代码或名称查询，结果依次按 代码完全匹配、代码前缀、名称前缀、名称包含、代码包含 排序
+     */
+    public List<InstrumentSuggestion> suggest(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        return loaded().search(normalized, Math.min(limit, MAX_SUGGESTIONS));
+    }
+
+    /**
+     * 写入后调用，出现新合约或名称变化时更新索引；索引尚未加载时不处理
+     */
+    public void onUpsert(Collection<StockAnalysisResult> rows) {
+        Index current = index;
+        if (current == null) {
+            generation.incrementAndGet();
+            return;
+        }
+        if (current.changes(rows).isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            current = index;
+            if (current != null) {
+                List<Entry> changes = current.changes(rows);
+                if (!changes.isEmpty()) {
+                    index = current.with(changes);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清空索引，下次查询时重新加载
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            index = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Index loaded() {
+        Index current = index;
+        if (current != null) {
+            meters.hit();
+            return current;
+        }
+        lock.lock();
+        try {
+            current = index;
+            if (current != null) {
+                meters.hit();
+                return current;
+            }
+            meters.miss();
+            long expectedGeneration = generation.get();
+            Index built = Index.build(loadUniverse());
+            if (generation.get() == expectedGeneration) {
+                index = built;
+            }
+            return built;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按合约分组，取最新日期的名称
+     */
+    private List<Entry> loadUniverse() {
+        TypedAggregation<StockAnalysisResult> aggregation = Aggregation.newAggregation(StockAnalysisResult.class,
+                Aggregation.sort(Sort.Direction.ASC, "tradeDate"),
+                Aggregation.group("exchangeId", "instrumentId")
+                        .last("instrumentName").as("instrumentName")
+                        .last("targetDate").as("targetDate"))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        List<Entry> entries = new ArrayList<>();
+        for (Document document : mongoTemplate.aggregate(aggregation, Document.class)) {
+            Document id = document.get("_id", Document.class);
+            Date targetDate = document.getDate("targetDate");
+            entries.add(new Entry(id.getString("exchangeId"), id.getString("instrumentId"),
+                    document.getString("instrumentName"), targetDate != null ? targetDate.getTime() : 0));
+        }
+        return entries;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String exchangeId, String instrumentId) {
+        return exchangeId + ":" + instrumentId;
+    }
+
+    /**
+     * 单字和双字n-gram
+     */
+    private static Set<String> grams(Entry entry) {
+        Set<String> grams = new LinkedHashSet<>();
+        addGrams(grams, entry.lowerName);
+        addGrams(grams, entry.lowerCode);
+        return grams;
+    }
+
+    private static void addGrams(Set<String> grams, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            grams.add(text.substring(i, i + 1));
+            if (i + 1 < text.length()) {
+                grams.add(text.substring(i, i + 2));
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final String exchangeId;
+
+        private final String instrumentId;
+
+        private final String instrumentName;
+
+        private final String lowerCode;
+
+        private final String lowerName;
+
+        /**
+         * 名称所属的日期，较早日期的写入不覆盖较新的名称
+         */
+        private final long nameDate;
+
+        Entry(String exchangeId, String instrumentId, String instrumentName, long nameDate) {
+            this.exchangeId = exchangeId;
+            this.instrumentId = instrumentId;
+            this.instrumentName = instrumentName;
+            this.lowerCode = normalize(instrumentId);
+            this.lowerName = normalize(instrumentName);
+            this.nameDate = nameDate;
+        }
+
+        String key() {
+            return InstrumentSearchIndex.key(exchangeId, instrumentId);
+        }
+
+        InstrumentSuggestion toSuggestion() {
+            return new InstrumentSuggestion(exchangeId, instrumentId, instrumentName);
+        }
+    }
+
+    /**
+     * 不可变的索引快照，更新时复制变化的部分
+     */
+    private static final class Index {
+
+        private final Map<String, Entry> byKey;
+
+        private final Entry[] byCode;
+
+        private final Map<String, Entry[]> postings;
+
+        private Index(Map<String, Entry> byKey, Entry[] byCode, Map<String, Entry[]> postings) {
+            this.byKey = byKey;
+            this.byCode = byCode;
+            this.postings = postings;
+        }
+
+        static Index build(List<Entry> entries) {
+            Map<String, Entry> byKey = new HashMap<>();
+            for (Entry entry : entries) {
+                byKey.put(entry.key(), entry);
+            }
+            Entry[] byCode = byKey.values().toArray(new Entry[0]);
+            Arrays.sort(byCode, CODE_ORDER);
+            Map<String, List<Entry>> lists = new HashMap<>();
+            for (Entry entry : byCode) {
+                for (String gram : grams(entry)) {
+                    lists.computeIfAbsent(gram, g -> new ArrayList<>()).add(entry);
+                }
+            }
+            Map<String, Entry[]> postings = new HashMap<>(lists.size() * 2);
+            lists.forEach((gram, list) -> postings.put(gram, list.toArray(new Entry[0])));
+            return new Index(byKey, byCode, postings);
+        }
+
+        /**
+         * 找出rows中的新合约和名称变化
+         */
+        List<Entry> changes(Collection<StockAnalysisResult> rows) {
+            Map<String, Entry> changes = new HashMap<>();
+            for (StockAnalysisResult row : rows) {
+                if (row.getExchangeId() == null || row.getInstrumentId() == null) {
+                    continue;
+                }
+                long date = row.getTargetDate() != null ? row.getTargetDate().getTime() : 0;
+                String key = key(row.getExchangeId(), row.getInstrumentId());
+                Entry existing = changes.containsKey(key) ? changes.get(key) : byKey.get(key);
+                if (existing != null && (row.getInstrumentName() == null || date < existing.nameDate
+                        || row.getInstrumentName().equals(existing.instrumentName))) {
+                    continue;
+                }
+                changes.put(key, new Entry(row.getExchangeId(), row.getInstrumentId(), row.getInstrumentName(), date));
+            }
+            return new ArrayList<>(changes.values());
+        }
+
+        /**
+         * 应用变化后的新索引，只复制受影响的倒排表
+         */
+        Index with(List<Entry> changes) {
+            Map<String, Entry> newByKey = new HashMap<>(byKey);
+            List<Entry> newByCode = new ArrayList<>(Arrays.asList(byCode));
+            Map<String, Set<Entry>> removed = new HashMap<>();
+            Map<String, List<Entry>> added = new HashMap<>();
+            for (Entry entry : changes) {
+                Entry previous = newByKey.put(entry.key(), entry);
+                int position = Collections.binarySearch(newByCode, entry, CODE_ORDER);
+                if (position >= 0) {
+                    newByCode.set(position, entry);
+                } else {
+                    newByCode.add(-position - 1, entry);
+                }
+                if (previous != null) {
+                    for (String gram : grams(previous)) {
+                        removed.computeIfAbsent(gram, g -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                                .add(previous);
+                    }
+                }
+                for (String gram : grams(entry)) {
+                    added.computeIfAbsent(gram, g -> new ArrayList<>()).add(entry);
+                }
+            }
+
+            Map<String, Entry[]> newPostings = new HashMap<>(postings);
+            Set<String> touched = new LinkedHashSet<>(removed.keySet());
+            touched.addAll(added.keySet());
+            for (String gram : touched) {
+                Set<Entry> removedEntries = removed.getOrDefault(gram, Set.of());
+                List<Entry> list = new ArrayList<>();
+                for (Entry entry : postings.getOrDefault(gram, new Entry[0])) {
+                    if (!removedEntries.contains(entry)) {
+                        list.add(entry);
+                    }
+                }
+                list.addAll(added.getOrDefault(gram, List.of()));
+                if (list.isEmpty()) {
+                    newPostings.remove(gram);
+                } else {
+                    newPostings.put(gram, list.toArray(new Entry[0]));
+                }
+            }
+            return new Index(newByKey, newByCode.toArray(new Entry[0]), newPostings);
+        }
+
+        List<InstrumentSuggestion> search(String query, int limit) {
+            Map<Entry, Integer> ranks = new IdentityHashMap<>();
+            // 代码前缀：数组按代码有序，完全匹配排在最前，取满limit条即可停止
+            for (int i = lowerBound(query); i < byCode.length && ranks.size() < limit
+                    && byCode[i].lowerCode.startsWith(query); i++) {
+                ranks.put(byCode[i], byCode[i].lowerCode.equals(query) ? RANK_CODE_EXACT : RANK_CODE_PREFIX);
+            }
+            if (ranks.size() < limit) {
+                for (Entry entry : candidates(query)) {
+                    if (ranks.containsKey(entry)) {
+                        continue;
+                    }
+                    if (entry.lowerName.startsWith(query)) {
+                        ranks.put(entry, RANK_NAME_PREFIX);
+                    } else if (entry.lowerName.contains(query)) {
+                        ranks.put(entry, RANK_NAME_CONTAINS);
+                    } else if (entry.lowerCode.contains(query)) {
+                        ranks.put(entry, RANK_CODE_CONTAINS);
+                    }
+                }
+            }
+            List<Entry> matches = new ArrayList<>(ranks.keySet());
+            matches.sort(Comparator.comparingInt((Entry entry) -> ranks.get(entry))
+                    .thenComparingInt(entry -> entry.lowerName.length())
+                    .thenComparing(CODE_ORDER));
+            List<InstrumentSuggestion> suggestions = new ArrayList<>(Math.min(limit, matches.size()));
+            for (int i = 0; i < matches.size() && i < limit; i++) {
+                suggestions.add(matches.get(i).toSuggestion());
+            }
+            return suggestions;
+        }
+
+        /**
+         * 包含query所有双字n-gram的候选中最短的倒排表，需要再校验是否连续包含
+         */
+        private Entry[] candidates(String query) {
+            if (query.length() == 1) {
+                return postings.getOrDefault(query, new Entry[0]);
+            }
+            Entry[] shortest = null;
+            for (int i = 0; i + 1 < query.length(); i++) {
+                Entry[] posting = postings.get(query.substring(i, i + 2));
+                if (posting == null) {
+                    return new Entry[0];
+                }
+                if (shortest == null || posting.length < shortest.length) {
+                    shortest = posting;
+                }
+            }
+            return shortest;
+        }
+
+        private int lowerBound(String code) {
+            int low = 0;
+            int high = byCode.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (byCode[mid].lowerCode.compareTo(code) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
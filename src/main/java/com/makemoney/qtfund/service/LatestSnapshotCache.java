@@ -0,0 +1,197 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.repository.StockAnalysisResultRepository;
+import com.makemoney.qtfund.util.CacheMeters;
+import com.makemoney.qtfund.util.TradingDates;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 最新交易日快照缓存
+ * 在内存中保存最新日期的全部数据，/latest直接从这里返回；
+ * 写入触及最新日期（或更新的日期）时失效，下一次读取时重新加载并整体替换。
+ * staged发布模式下最新日期由TradingDayPublisher的发布指针决定，只有写入已发布的交易日才使快照失效；
+ * 提交新交易日时先在旁边构建好新快照，再与发布指针一起整体替换，读取方不会看到写了一半的交易日
+ */
+@Component
+public class LatestSnapshotCache {
+
+    @Autowired
+    private StockAnalysisResultRepository repository;
+
+    @Autowired
+    private DataVersionTracker dataVersionTracker;
+
+    @Autowired
+    private TradingDayPublisher publisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CacheMeters meters;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 每次失效加一，用于丢弃加载期间被写入打断的快照
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        meters = CacheMeters.register(meterRegistry, "latest-snapshot");
+    }
+
+    /**
+     * 获取当前快照，缓存为空时从数据库加载
+     */
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            meters.hit();
+            return current;
+        }
+        rebuildLock.lock();
+        try {
+            current = snapshot;
+            if (current != null) {
+                meters.hit();
+                return current;
+            }
+            meters.miss();
+            long expectedGeneration = generation.get();
+            Integer tradeDate;
+            if (publisher.isStaged()) {
+                tradeDate = publisher.getPublishedTradeDate();
+            } else {
+                StockAnalysisResult latest = repository.findFirstByOrderByTradeDateDesc();
+                tradeDate = latest != null ? TradingDates.toDateKey(latest) : null;
+            }
+            current = load(tradeDate);
+            // 加载期间如有写入，本次结果只返回给当前调用方，不放入缓存
+            if (generation.get() == expectedGeneration) {
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * 发布tradeDate：先加载新快照，再更新发布指针并替换当前快照，加载期间读取方继续使用旧快照
+     */
+    public Snapshot publish(int tradeDate) {
+        rebuildLock.lock();
+        try {
+            Snapshot published = load(tradeDate);
+            publisher.publish(tradeDate);
+            generation.incrementAndGet();
+            snapshot = published;
+            // 加载期间该日期有写入时，下一次读取重新加载
+            if (!published.getDataVersion().equals(dataVersionTracker.getDateVersion(published.getTargetDate()))) {
+                invalidate();
+            }
+            return published;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Snapshot load(Integer tradeDate) {
+        Date targetDate = tradeDate != null ? TradingDates.toDate(tradeDate) : null;
+        // 先取版本再读数据，保证数据不旧于版本号
+        DataVersionTracker.Version dataVersion = dataVersionTracker.getDateVersion(targetDate);
+        List<StockAnalysisResult> rows = tradeDate != null
+                ? List.copyOf(repository.findByTradeDate(tradeDate))
+                : List.of();
+        return new Snapshot(targetDate, rows, version.incrementAndGet(), new Date(), dataVersion);
+    }
+
+    /**
+     * 写入某一日期的数据后调用，日期不早于当前快照日期时使快照失效；
+     * staged模式下只有写入当前快照的交易日时才失效
+     */
+    public void onWrite(Date targetDate) {
+        Snapshot current = snapshot;
+        if (publisher.isStaged()) {
+            if (current == null || current.getTargetDate() == null || targetDate == null
+                    || TradingDates.toDateKey(targetDate) == TradingDates.toDateKey(current.getTargetDate())) {
+                invalidate();
+            }
+            return;
+        }
+        if (current == null || current.getTargetDate() == null || targetDate == null
+                || !targetDate.before(current.getTargetDate())) {
+            invalidate();
+        }
+    }
+
+    /**
+     * 无条件使快照失效
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * 某一交易日全部数据的不可变快照
+     */
+    public static class Snapshot {
+
+        private final Date targetDate;
+
+        private final List<StockAnalysisResult> rows;
+
+        private final long version;
+
+        private final Date builtAt;
+
+        private final DataVersionTracker.Version dataVersion;
+
+        Snapshot(Date targetDate, List<StockAnalysisResult> rows, long version, Date builtAt,
+                 DataVersionTracker.Version dataVersion) {
+            this.targetDate = targetDate;
+            this.rows = rows;
+            this.version = version;
+            this.builtAt = builtAt;
+            this.dataVersion = dataVersion;
+        }
+
+        public Date getTargetDate() {
+            return targetDate;
+        }
+
+        public List<StockAnalysisResult> getRows() {
+            return rows;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Date getBuiltAt() {
+            return builtAt;
+        }
+
+        /**
+         * 构建快照时该日期的数据版本
+         */
+        public DataVersionTracker.Version getDataVersion() {
+            return dataVersion;
+        }
+    }
+}
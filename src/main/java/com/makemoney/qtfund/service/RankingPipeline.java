@@ -0,0 +1,280 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.util.TradingDates;
+import com.mongodb.bulk.BulkWriteResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 每日排名和变化量计算
+ * 对某一交易日的score做横截面排名（score越高排名越靠前，并列时名次相同），
+ * 再与上一交易日的score和排名比较得到scoreChange和rankingChange（上一交易日名次减当日名次，排名上升为正），按_id批量写回。
+ * 上一交易日的排名同样由其score计算，因此各交易日互不依赖，回填时每个交易日在ForkJoinPool中独立执行
+ */
+@Component
+public class RankingPipeline {
+
+    /**
+     * 单次bulkWrite发送的最大行数
+     */
+    private static final int BULK_BATCH_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * 回填时的并行度，0表示使用CPU核数
+     */
+    @Value("${qtfund.ranking.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * 重算单个交易日，返回写回后的完整行
+     */
+    public DayResult recompute(Date targetDate) {
+        int tradeDate = TradingDates.toDateKey(targetDate);
+        return computeDay(tradeDate, previousDate(tradeDate));
+    }
+
+    /**
+     * 回填[from, to]区间内的每个交易日，参数为null时不限制；各交易日并行执行，返回每日的统计
+     */
+    public List<DayResult> backfill(Date from, Date to) {
+        Query query = new Query();
+        if (from != null || to != null) {
+            Criteria date = Criteria.where("tradeDate");
+            if (from != null) {
+                date.gte(TradingDates.toDateKey(from));
+            }
+            if (to != null) {
+                date.lte(TradingDates.toDateKey(to));
+            }
+            query.addCriteria(date);
+        }
+        List<Integer> dates = new ArrayList<>(
+                mongoTemplate.findDistinct(query, "tradeDate", StockAnalysisResult.class, Integer.class));
+        if (dates.isEmpty()) {
+            return List.of();
+        }
+        dates.sort(null);
+
+        List<Callable<DayResult>> tasks = new ArrayList<>(dates.size());
+        Integer previous = previousDate(dates.get(0));
+        for (Integer date : dates) {
+            Integer previousOfDay = previous;
+            // 只返回统计，不保留各日的行，内存占用与并行度有关而与天数无关
+            tasks.add(() -> computeDay(date, previousOfDay).withoutRows());
+            previous = date;
+        }
+        List<DayResult> results = new ArrayList<>(tasks.size());
+        for (Future<DayResult> future : pool.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("排名回填被中断", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException("排名回填失败", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private DayResult computeDay(int tradeDate, Integer previousDate) {
+        List<StockAnalysisResult> rows = mongoTemplate.find(
+                Query.query(Criteria.where("tradeDate").is(tradeDate)), StockAnalysisResult.class);
+        double[] scores = scores(rows);
+        int[] rankings = rank(scores);
+
+        Map<String, Previous> previousByKey = new HashMap<>();
+        if (previousDate != null) {
+            Query previousQuery = Query.query(Criteria.where("tradeDate").is(previousDate));
+            previousQuery.fields().include("exchangeId", "instrumentId", "score");
+            List<StockAnalysisResult> previousRows = mongoTemplate.find(previousQuery, StockAnalysisResult.class);
+            double[] previousScores = scores(previousRows);
+            int[] previousRankings = rank(previousScores);
+            for (int i = 0; i < previousRows.size(); i++) {
+                StockAnalysisResult row = previousRows.get(i);
+                previousByKey.put(key(row), new Previous(previousScores[i], previousRankings[i]));
+            }
+        }
+
+        for (int i = 0; i < rows.size(); i++) {
+            StockAnalysisResult row = rows.get(i);
+            Previous previous = previousByKey.get(key(row));
+            boolean ranked = rankings[i] > 0;
+            boolean previousRanked = previous != null && previous.ranking > 0;
+            row.setRanking(ranked ? rankings[i] : null);
+            row.setScoreChange(ranked && previousRanked ? scores[i] - previous.score : null);
+            row.setRankingChange(ranked && previousRanked ? previous.ranking - rankings[i] : null);
+        }
+        return new DayResult(TradingDates.toDate(tradeDate), rows, write(rows));
+    }
+
+    private long write(List<StockAnalysisResult> rows) {
+        long modified = 0;
+        for (int from = 0; from < rows.size(); from += BULK_BATCH_SIZE) {
+            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                    StockAnalysisResult.class);
+            for (StockAnalysisResult row : rows.subList(from, Math.min(from + BULK_BATCH_SIZE, rows.size()))) {
+                bulkOps.updateOne(Query.query(Criteria.where("id").is(row.getId())), new Update()
+                        .set("ranking", row.getRanking())
+                        .set("scoreChange", row.getScoreChange())
+                        .set("rankingChange", row.getRankingChange()));
+            }
+            BulkWriteResult result = bulkOps.execute();
+            modified += result.getModifiedCount();
+        }
+        return modified;
+    }
+
+    /**
+     * 上一个有数据的交易日，不存在时返回null
+     */
+    private Integer previousDate(int tradeDate) {
+        Query query = Query.query(Criteria.where("tradeDate").lt(tradeDate))
+                .with(Sort.by(Sort.Direction.DESC, "tradeDate"));
+        query.fields().include("tradeDate");
+        StockAnalysisResult previous = mongoTemplate.findOne(query, StockAnalysisResult.class);
+        return previous != null ? previous.getTradeDate() : null;
+    }
+
+    private static double[] scores(List<StockAnalysisResult> rows) {
+        double[] scores = new double[rows.size()];
+        for (int i = 0; i < scores.length; i++) {
+            Double score = rows.get(i).getScore();
+            scores[i] = score != null ? score : Double.NaN;
+        }
+        return scores;
+    }
+
+    /**
+     * 竞争排名：名次为1加上严格高于该score的个数，score缺失的行名次为0
+     * 先对score升序并行排序，再对每个score二分查找第一个更大的位置
+     */
+    public static int[] rank(double[] scores) {
+        double[] sorted = Arrays.stream(scores).filter(score -> !Double.isNaN(score)).toArray();
+        Arrays.parallelSort(sorted);
+        int[] rankings = new int[scores.length];
+        for (int i = 0; i < scores.length; i++) {
+            if (!Double.isNaN(scores[i])) {
+                rankings[i] = sorted.length - upperBound(sorted, scores[i]) + 1;
+            }
+        }
+        return rankings;
+    }
+
+    private static int upperBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String key(StockAnalysisResult row) {
+        return row.getExchangeId() + ":" + row.getInstrumentId();
+    }
+
+    private static final class Previous {
+
+        private final double score;
+
+        private final int ranking;
+
+        Previous(double score, int ranking) {
+            this.score = score;
+            this.ranking = ranking;
+        }
+    }
+
+    /**
+     * 单个交易日的计算结果
+     */
+    public static class DayResult {
+
+        private final Date targetDate;
+
+        private final List<StockAnalysisResult> rows;
+
+        private final int rowCount;
+
+        private final long modified;
+
+        DayResult(Date targetDate, List<StockAnalysisResult> rows, long modified) {
+            this(targetDate, rows, rows.size(), modified);
+        }
+
+        private DayResult(Date targetDate, List<StockAnalysisResult> rows, int rowCount, long modified) {
+            this.targetDate = targetDate;
+            this.rows = rows;
+            this.rowCount = rowCount;
+            this.modified = modified;
+        }
+
+        DayResult withoutRows() {
+            return new DayResult(targetDate, List.of(), rowCount, modified);
+        }
+
+        public Date getTargetDate() {
+            return targetDate;
+        }
+
+        /**
+         * 写回后的完整行，回填时为空
+         */
+        public List<StockAnalysisResult> getRows() {
+            return rows;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.dto.StockAnalysisQuery;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.repository.ReactiveStockAnalysisResultRepository;
+import com.makemoney.qtfund.util.StockAnalysisFields;
+import com.makemoney.qtfund.util.TradingDates;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 股票分析结果响应式读取Service层
+ * 与StockAnalysisResultService的读取语义一致，但直接从数据库流式返回行，不经过内存快照和索引，
+ * 用于高并发读取：等待数据库时不占用线程，结果按下游的消费速度逐行拉取
+ */
+@Service
+public class ReactiveStockAnalysisResultService {
+
+    @Autowired
+    private ReactiveStockAnalysisResultRepository repository;
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    private StockAnalysisResultService stockAnalysisResultService;
+
+    @Autowired
+    private TradingDayPublisher publisher;
+
+    /**
+     * 最新交易日，没有数据时为空；staged模式下为已发布的交易日
+     */
+    public Mono<Integer> findLatestTradeDate() {
+        if (publisher.isStaged()) {
+            // 发布指针首次读取时会访问数据库，之后只读内存
+            return Mono.fromCallable(publisher::getPublishedTradeDate).subscribeOn(Schedulers.boundedElastic());
+        }
+        return repository.findFirstByOrderByTradeDateDesc().mapNotNull(TradingDates::toDateKey);
+    }
+
+    /**
+     * 最新交易日的所有数据
+     */
+    public Flux<StockAnalysisResult> findLatest() {
+        return findLatestTradeDate().flatMapMany(repository::findByTradeDate);
+    }
+
+    /**
+     * 单个合约在[from, to]内的历史，按日期升序，from/to为null时不限制
+     */
+    public Flux<StockAnalysisResult> findHistory(String exchangeId, String instrumentId, Date from, Date to) {
+        int fromKey = from != null ? TradingDates.toDateKey(from) : 0;
+        int toKey = to != null ? TradingDates.toDateKey(to) : Integer.MAX_VALUE;
+        return repository.findByExchangeIdAndInstrumentIdAndTradeDateRange(exchangeId, instrumentId, fromKey, toKey);
+    }
+
+    /**
+     * 组合查询，条件、排序和limit与StockAnalysisResultService.search一致；sort字段无效时抛出IllegalArgumentException
+     */
+    public Flux<Map<String, Object>> search(StockAnalysisQuery searchQuery, List<String> fields) {
+        Query query = new Query(stockAnalysisResultService.toCriteria(searchQuery))
+                .with(StockAnalysisResultService.toSort(searchQuery.getSort()))
+                .limit(StockAnalysisResultService.toLimit(searchQuery.getLimit()));
+        for (String field : fields) {
+            query.fields().include(field);
+        }
+        return reactiveMongoTemplate.find(query, StockAnalysisResult.class)
+                .map(row -> StockAnalysisFields.project(row, fields));
+    }
+}
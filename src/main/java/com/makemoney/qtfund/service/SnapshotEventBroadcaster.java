@@ -0,0 +1,310 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.dto.SnapshotDiff;
+import com.makemoney.qtfund.dto.SnapshotInfo;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.util.ThreadFactories;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 最新快照变化的SSE推送
+ * 有订阅者时定期检查LatestSnapshotCache，交易日变化时推送published事件，同一交易日的数据变化时推送只含变化字段的diff事件；
+ * 间隔内的多次写入合并为一次推送。每个事件只序列化一次，再放入各连接自己的队列，由该连接的发送任务（虚拟线程）
+ * 按顺序写出，同一连接上的事件不会乱序；空闲连接不占用线程，慢连接也不会阻塞其他连接，积压过多时断开。
+ * 另定期发送注释行作为心跳，及时清理已断开的连接
+ */
+@Component
+public class SnapshotEventBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotEventBroadcaster.class);
+
+    /**
+     * 单个连接最多积压的事件数，超出时断开该连接，客户端重连后从snapshot事件重新开始
+     */
+    private static final int MAX_PENDING_EVENTS = 100;
+
+    @Autowired
+    private LatestSnapshotCache latestSnapshotCache;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * 最大连接数
+     */
+    @Value("${qtfund.sse.max-connections:10000}")
+    private int maxConnections;
+
+    /**
+     * 检查快照变化的间隔
+     */
+    @Value("${qtfund.sse.check-interval-ms:1000}")
+    private long checkIntervalMillis;
+
+    /**
+     * 心跳间隔
+     */
+    @Value("${qtfund.sse.heartbeat-interval-ms:15000}")
+    private long heartbeatIntervalMillis;
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 检查、心跳和新连接的首个事件都在这个单线程上执行，lastBroadcast只由它读写
+     */
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService senders;
+
+    private LatestSnapshotCache.Snapshot lastBroadcast;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadFactories.named("snapshot-events", virtualThreads));
+        senders = Executors.newVirtualThreadPerTaskExecutor();
+        scheduler.scheduleWithFixedDelay(this::checkQuietly, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMillis, heartbeatIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        connections.forEach(Connection::close);
+        connections.clear();
+        senders.shutdown();
+    }
+
+    /**
+     * 新建一个订阅，连接后首先收到当前快照的snapshot事件；连接数已满时返回null
+     */
+    public SseEmitter subscribe() {
+        if (connections.size() >= maxConnections) {
+            return null;
+        }
+        // 不设超时，断开的连接由心跳发现
+        SseEmitter emitter = new SseEmitter(0L);
+        Connection connection = new Connection(emitter);
+        emitter.onCompletion(() -> connections.remove(connection));
+        emitter.onTimeout(() -> connections.remove(connection));
+        emitter.onError(e -> connections.remove(connection));
+        connections.add(connection);
+        try {
+            scheduler.execute(() -> greet(connection));
+        } catch (RejectedExecutionException e) {
+            connection.close();
+        }
+        return emitter;
+    }
+
+    /**
+     * 当前连接数
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    private void greet(Connection connection) {
+        if (lastBroadcast == null) {
+            lastBroadcast = latestSnapshotCache.get();
+        }
+        connection.enqueue(event("snapshot", lastBroadcast.getVersion(), info(lastBroadcast)));
+    }
+
+    private void checkQuietly() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            log.error("检查快照变化失败", e);
+        }
+    }
+
+    private void check() {
+        if (connections.isEmpty()) {
+            lastBroadcast = null;
+            return;
+        }
+        LatestSnapshotCache.Snapshot previous = lastBroadcast;
+        LatestSnapshotCache.Snapshot current = latestSnapshotCache.get();
+        if (previous == null || previous == current) {
+            lastBroadcast = current;
+            return;
+        }
+        lastBroadcast = current;
+        if (!Objects.equals(previous.getTargetDate(), current.getTargetDate())) {
+            broadcast(event("published", current.getVersion(), info(current)));
+            return;
+        }
+        List<SnapshotDiff.RowChange> changes = diff(previous.getRows(), current.getRows());
+        if (!changes.isEmpty()) {
+            broadcast(event("diff", current.getVersion(), new SnapshotDiff(current.getTargetDate(),
+                    current.getVersion(), previous.getVersion(), changes)));
+        }
+    }
+
+    private void heartbeat() {
+        if (!connections.isEmpty()) {
+            broadcast(SseEmitter.event().comment("").build());
+        }
+    }
+
+    /**
+     * 同一交易日前后两组行的差异，按(exchangeId, instrumentId)对应，只比较score、ranking及其变化量
+     */
+    public static List<SnapshotDiff.RowChange> diff(List<StockAnalysisResult> previous,
+                                                    List<StockAnalysisResult> current) {
+        Map<String, StockAnalysisResult> previousByKey = new HashMap<>(previous.size() * 2);
+        for (StockAnalysisResult row : previous) {
+            previousByKey.put(row.getExchangeId() + ":" + row.getInstrumentId(), row);
+        }
+        List<SnapshotDiff.RowChange> changes = new ArrayList<>();
+        for (StockAnalysisResult row : current) {
+            StockAnalysisResult before = previousByKey.remove(row.getExchangeId() + ":" + row.getInstrumentId());
+            SnapshotDiff.RowChange change = new SnapshotDiff.RowChange(row.getExchangeId(), row.getInstrumentId());
+            List<String> changed = new ArrayList<>(4);
+            if (before == null || !Objects.equals(before.getScore(), row.getScore())) {
+                change.setScore(row.getScore());
+                changed.add("score");
+            }
+            if (before == null || !Objects.equals(before.getRanking(), row.getRanking())) {
+                change.setRanking(row.getRanking());
+                changed.add("ranking");
+            }
+            if (before == null || !Objects.equals(before.getScoreChange(), row.getScoreChange())) {
+                change.setScoreChange(row.getScoreChange());
+                changed.add("scoreChange");
+            }
+            if (before == null || !Objects.equals(before.getRankingChange(), row.getRankingChange())) {
+                change.setRankingChange(row.getRankingChange());
+                changed.add("rankingChange");
+            }
+            if (!changed.isEmpty()) {
+                change.setChanged(changed);
+                changes.add(change);
+            }
+        }
+        for (StockAnalysisResult removed : previousByKey.values()) {
+            SnapshotDiff.RowChange change = new SnapshotDiff.RowChange(removed.getExchangeId(),
+                    removed.getInstrumentId());
+            change.setRemoved(true);
+            changes.add(change);
+        }
+        return changes;
+    }
+
+    private static SnapshotInfo info(LatestSnapshotCache.Snapshot snapshot) {
+        return new SnapshotInfo(snapshot.getVersion(), snapshot.getBuiltAt(), snapshot.getTargetDate(),
+                snapshot.getRows().size());
+    }
+
+    /**
+     * 序列化一次，得到可以发送给所有连接的事件
+     */
+    private Set<ResponseBodyEmitter.DataWithMediaType> event(String name, long version, Object payload) {
+        return SseEmitter.event()
+                .name(name)
+                .id(Long.toString(version))
+                .data(jsonMapper.writeValueAsString(payload))
+                .build();
+    }
+
+    private void broadcast(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        for (Connection connection : connections) {
+            connection.enqueue(event);
+        }
+    }
+
+    /**
+     * 一个SSE连接及其待发送事件队列
+     * pending为已入队未发送的事件数，从0变为1的一方提交发送任务，发送任务写完队列后退出，
+     * 因此同一时刻至多一个线程在写这个连接，事件按入队顺序写出
+     */
+    private final class Connection {
+
+        private final SseEmitter emitter;
+
+        private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private volatile boolean closed;
+
+        Connection(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            if (closed) {
+                return;
+            }
+            if (pending.get() >= MAX_PENDING_EVENTS) {
+                log.warn("SSE连接积压超过{}个事件，断开", MAX_PENDING_EVENTS);
+                close();
+                return;
+            }
+            queue.add(event);
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    close();
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                Set<ResponseBodyEmitter.DataWithMediaType> event = queue.poll();
+                if (!closed) {
+                    send(event);
+                }
+            } while (pending.decrementAndGet() > 0);
+        }
+
+        private void send(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                // 连接已断开或已完成
+                close();
+            }
+        }
+
+        void close() {
+            closed = true;
+            connections.remove(this);
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.util.StockAnalysisFields;
+import com.makemoney.qtfund.util.TradingDates;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 流式导出
+ * 通过Mongo游标逐行读取并写出NDJSON或CSV，内存占用与数据量无关；
+ * 写出是阻塞的，客户端读得慢时不会继续从游标拉取下一批，形成自然的背压
+ */
+@Component
+public class StockAnalysisExporter {
+
+    /**
+     * 游标每批从服务器读取的行数
+     */
+    private static final int CURSOR_BATCH_SIZE = 1000;
+
+    /**
+     * 每写出多少行flush一次
+     */
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Sort EXPORT_SORT = Sort.by("tradeDate", "exchangeId", "instrumentId");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    /**
+     * 按日期区间[from, to]和交易所过滤后写出，参数为null时不限制，返回写出的行数
+     */
+    public long export(OutputStream target, Format format, Date from, Date to, String exchangeId,
+                       List<String> fields) throws IOException {
+        Query query = new Query().with(EXPORT_SORT).cursorBatchSize(CURSOR_BATCH_SIZE);
+        if (from != null || to != null) {
+            Criteria date = Criteria.where("tradeDate");
+            if (from != null) {
+                date.gte(TradingDates.toDateKey(from));
+            }
+            if (to != null) {
+                date.lte(TradingDates.toDateKey(to));
+            }
+            query.addCriteria(date);
+        }
+        if (exchangeId != null) {
+            query.addCriteria(Criteria.where("exchangeId").is(exchangeId));
+        }
+        for (String field : fields) {
+            query.fields().include(field);
+        }
+
+        OutputStream out = new BufferedOutputStream(target, BUFFER_SIZE);
+        if (format == Format.CSV) {
+            writeCsvLine(out, fields.toArray());
+        }
+        long count = 0;
+        try (Stream<StockAnalysisResult> rows = mongoTemplate.stream(query, StockAnalysisResult.class)) {
+            Iterator<StockAnalysisResult> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                StockAnalysisResult row = iterator.next();
+                if (format == Format.CSV) {
+                    writeCsvRow(out, row, fields);
+                } else {
+                    out.write(jsonMapper.writeValueAsBytes(StockAnalysisFields.project(row, fields)));
+                    out.write('\n');
+                }
+                if (++count % FLUSH_EVERY_ROWS == 0) {
+                    out.flush();
+                }
+            }
+        }
+        out.flush();
+        return count;
+    }
+
+    private static void writeCsvRow(OutputStream out, StockAnalysisResult row, List<String> fields) throws IOException {
+        Object[] values = new Object[fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            Object value = StockAnalysisFields.get(row, fields.get(i));
+            // 日期按yyyy-MM-dd输出，与查询参数格式一致
+            values[i] = value instanceof Date date ? TradingDates.toLocalDate(TradingDates.toDateKey(date)) : value;
+        }
+        writeCsvLine(out, values);
+    }
+
+    private static void writeCsvLine(OutputStream out, Object[] values) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (values[i] != null) {
+                appendCsvValue(line, values[i].toString());
+            }
+        }
+        line.append('\n');
+        out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendCsvValue(StringBuilder line, String value) {
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,268 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.dto.BatchSaveResult;
+import com.makemoney.qtfund.dto.IngestBatchStatus;
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.util.StockAnalysisIds;
+import com.makemoney.qtfund.util.ThreadFactories;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 异步写入（write-behind）
+ * 提交的行放入有界的待写队列后立即返回批次号，由单个写入线程按条数或时间间隔取出并bulk upsert。
+ * 队列按自然键合并，同一(exchangeId, instrumentId, targetDate)在写入前被再次提交时只写最后一次的值；
+ * 队列已满时拒绝提交，由调用方稍后重试
+ */
+@Service
+public class StockAnalysisIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockAnalysisIngestService.class);
+
+    /**
+     * 保留状态的最近批次数，更早的批次无法再查询
+     */
+    private static final int MAX_TRACKED_BATCHES = 10000;
+
+    @Autowired
+    private StockAnalysisResultService stockAnalysisResultService;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * 待写队列的最大行数（合并后）
+     */
+    @Value("${qtfund.ingest.capacity:100000}")
+    private int capacity;
+
+    /**
+     * 每次bulk写入的最大行数，待写行数达到该值时立即写入
+     */
+    @Value("${qtfund.ingest.flush-size:1000}")
+    private int flushSize;
+
+    /**
+     * 定时写入的间隔
+     */
+    @Value("${qtfund.ingest.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 同一时间只有一个线程写入，保证相同键的先后两次提交按顺序落库
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * 自然键 -> 待写行，按首次进入队列的顺序写入
+     */
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+
+    private final Map<String, IngestBatchStatus> batches = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IngestBatchStatus> eldest) {
+            return size() > MAX_TRACKED_BATCHES;
+        }
+    };
+
+    private ScheduledExecutorService writer;
+
+    @PostConstruct
+    public void init() {
+        writer = Executors.newSingleThreadScheduledExecutor(
+                ThreadFactories.named("stock-analysis-ingest", virtualThreads));
+        writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止写入线程并写完队列中剩余的行
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(30, TimeUnit.SECONDS);
+        flush();
+    }
+
+    /**
+     * 提交一批行，返回批次状态；队列剩余容量不足时返回null。
+     * 行数超过队列容量时抛出IllegalArgumentException
+     */
+    public IngestBatchStatus submit(List<StockAnalysisResult> rows) {
+        if (rows.size() > capacity) {
+            throw new IllegalArgumentException("单次提交的行数不能超过" + capacity);
+        }
+        IngestBatchStatus status = new IngestBatchStatus(UUID.randomUUID().toString(), rows.size());
+        boolean flushNow;
+        lock.lock();
+        try {
+            if (pending.size() + rows.size() > capacity) {
+                return null;
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                StockAnalysisResult row = rows.get(i);
+                String key = row != null ? StockAnalysisIds.of(row) : null;
+                if (key == null) {
+                    status.addError(i, "exchangeId、instrumentId、targetDate不能为空");
+                    continue;
+                }
+                Pending replaced = pending.put(key, new Pending(row, status, i));
+                if (replaced != null) {
+                    replaced.batch.addCoalesced();
+                }
+            }
+            status.completeIfDone();
+            batches.put(status.getBatchId(), status);
+            flushNow = pending.size() >= flushSize;
+        } finally {
+            lock.unlock();
+        }
+        if (flushNow) {
+            try {
+                writer.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // 正在关闭，剩余的行由shutdown写入
+            }
+        }
+        return copyOf(status.getBatchId());
+    }
+
+    /**
+     * 批次状态，批次不存在或已过期时返回null
+     */
+    public IngestBatchStatus getStatus(String batchId) {
+        return copyOf(batchId);
+    }
+
+    /**
+     * 当前待写的行数
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按flushSize分组写完当前队列中的全部行
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            while (true) {
+                List<Pending> chunk = take();
+                if (chunk.isEmpty()) {
+                    return;
+                }
+                write(chunk);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("异步写入失败", e);
+        }
+    }
+
+    private List<Pending> take() {
+        lock.lock();
+        try {
+            List<Pending> chunk = new ArrayList<>(Math.min(flushSize, pending.size()));
+            Iterator<Pending> iterator = pending.values().iterator();
+            while (iterator.hasNext() && chunk.size() < flushSize) {
+                chunk.add(iterator.next());
+                iterator.remove();
+            }
+            return chunk;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(List<Pending> chunk) {
+        List<StockAnalysisResult> rows = new ArrayList<>(chunk.size());
+        for (Pending entry : chunk) {
+            rows.add(entry.row);
+        }
+        Map<Integer, String> errors = new HashMap<>();
+        try {
+            BatchSaveResult result = stockAnalysisResultService.saveOrUpdateAll(rows);
+            for (BatchSaveResult.RowError error : result.getErrors()) {
+                errors.put(error.getIndex(), error.getMessage());
+            }
+        } catch (RuntimeException e) {
+            log.error("异步写入 {} 行失败", chunk.size(), e);
+            for (int i = 0; i < chunk.size(); i++) {
+                errors.put(i, e.getMessage());
+            }
+        }
+        lock.lock();
+        try {
+            for (int i = 0; i < chunk.size(); i++) {
+                Pending entry = chunk.get(i);
+                String error = errors.get(i);
+                if (error != null) {
+                    entry.batch.addError(entry.index, error);
+                } else {
+                    entry.batch.addWritten();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private IngestBatchStatus copyOf(String batchId) {
+        lock.lock();
+        try {
+            IngestBatchStatus status = batches.get(batchId);
+            return status != null ? status.copy() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Pending {
+
+        private final StockAnalysisResult row;
+
+        private final IngestBatchStatus batch;
+
+        private final int index;
+
+        Pending(StockAnalysisResult row, IngestBatchStatus batch, int index) {
+            this.row = row;
+            this.batch = batch;
+            this.index = index;
+        }
+    }
+}
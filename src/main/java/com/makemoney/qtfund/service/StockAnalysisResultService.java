@@ -1,13 +1,48 @@
 package com.makemoney.qtfund.service;
 
+import com.makemoney.qtfund.dto.BatchSaveResult;
+import com.makemoney.qtfund.dto.CursorPage;
+import com.makemoney.qtfund.dto.DailyAnalytics;
+import com.makemoney.qtfund.dto.InstrumentHistory;
+import com.makemoney.qtfund.dto.InstrumentKey;
+import com.makemoney.qtfund.dto.InstrumentSuggestion;
+import com.makemoney.qtfund.dto.RankingRunResult;
+import com.makemoney.qtfund.dto.StockAnalysisQuery;
 import com.makemoney.qtfund.entity.StockAnalysisResult;
 import com.makemoney.qtfund.repository.StockAnalysisResultRepository;
+import com.makemoney.qtfund.util.HistoryDownsampler;
+import com.makemoney.qtfund.util.KeysetCursor;
+import com.makemoney.qtfund.util.StockAnalysisFields;
+import com.makemoney.qtfund.util.StockAnalysisIds;
+import com.makemoney.qtfund.util.TradingDates;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReplaceOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * 股票分析结果Service层
@@ -15,45 +50,175 @@ import java.util.Optional;
 @Service
 public class StockAnalysisResultService {
 
+    /**
+     * 单次bulkWrite发送的最大行数
+     */
+    private static final int BULK_BATCH_SIZE = 1000;
+
+    /**
+     * 分页查询的默认和最大每页行数
+     */
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    public static final int MAX_PAGE_SIZE = 5000;
+
+    /**
+     * 分页键，与索引idx_date_exchange_instrument一致
+     */
+    private static final Sort PAGE_SORT = Sort.by("tradeDate", "exchangeId", "instrumentId");
+
     @Autowired
     private StockAnalysisResultRepository repository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private LatestSnapshotCache latestSnapshotCache;
+
+    @Autowired
+    private EncodedResponseCache encodedResponseCache;
+
+    @Autowired
+    private DataVersionTracker dataVersionTracker;
+
+    @Autowired
+    private InstrumentHistoryIndex instrumentHistoryIndex;
+
+    @Autowired
+    private StockAnalysisExporter stockAnalysisExporter;
+
+    @Autowired
+    private InstrumentSearchIndex instrumentSearchIndex;
+
+    @Autowired
+    private RankingPipeline rankingPipeline;
+
+    @Autowired
+    private DailyAnalyticsCache dailyAnalyticsCache;
+
+    @Autowired
+    private TradingDayPublisher tradingDayPublisher;
+
     /**
      * 创建/保存股票分析结果
+     * 自然键完整时_id由自然键生成，保存为一次按_id的replaceOne(upsert)，相同自然键的记录会被整体替换
      */
     public StockAnalysisResult save(StockAnalysisResult stockAnalysisResult) {
-        return repository.save(stockAnalysisResult);
+        assignKeys(stockAnalysisResult);
+        StockAnalysisResult saved = repository.save(stockAnalysisResult);
+        afterUpsert(saved);
+        return saved;
     }
 
     /**
      * 保存或更新股票分析结果
      * 如果存在相同的exchangeId、instrumentId、targetDate，则更新；否则插入
+     * _id由自然键确定，无需先按三个字段查找已有记录
      */
     public StockAnalysisResult saveOrUpdate(StockAnalysisResult stockAnalysisResult) {
-        // 检查是否存在相同的记录
-        Optional<StockAnalysisResult> existing = repository.findByExchangeIdAndInstrumentIdAndTargetDate(
-                stockAnalysisResult.getExchangeId(),
-                stockAnalysisResult.getInstrumentId(),
-                stockAnalysisResult.getTargetDate());
+        return save(stockAnalysisResult);
+    }
 
-        if (existing.isPresent()) {
-            // 如果存在，则更新
-            StockAnalysisResult existingResult = existing.get();
-            existingResult.setExchangeId(stockAnalysisResult.getExchangeId());
-            existingResult.setInstrumentId(stockAnalysisResult.getInstrumentId());
-            existingResult.setInstrumentName(stockAnalysisResult.getInstrumentName());
-            existingResult.setClose(stockAnalysisResult.getClose());
-            existingResult.setAmount(stockAnalysisResult.getAmount());
-            existingResult.setScore(stockAnalysisResult.getScore());
-            existingResult.setRanking(stockAnalysisResult.getRanking());
-            existingResult.setScoreChange(stockAnalysisResult.getScoreChange());
-            existingResult.setRankingChange(stockAnalysisResult.getRankingChange());
-            existingResult.setTargetDate(stockAnalysisResult.getTargetDate());
-            return repository.save(existingResult);
-        } else {
-            // 如果不存在，则插入
-            return repository.save(stockAnalysisResult);
+    /**
+     * 保存或更新一行，返回是否为新插入
+     * 有_id（自然键完整或调用方指定）时执行一次按_id的replaceOne(upsert)，由upsertedId判断插入还是更新；
+     * 没有_id时直接插入
+     */
+    public boolean upsert(StockAnalysisResult stockAnalysisResult) {
+        assignKeys(stockAnalysisResult);
+        if (stockAnalysisResult.getId() == null) {
+            save(stockAnalysisResult);
+            return true;
+        }
+        Query byId = Query.query(Criteria.where("id").is(stockAnalysisResult.getId()));
+        UpdateResult result = mongoTemplate.replace(byId, stockAnalysisResult, ReplaceOptions.replaceOptions().upsert());
+        afterUpsert(stockAnalysisResult);
+        return result.getUpsertedId() != null;
+    }
+
+    /**
+     * 批量保存或更新股票分析结果
+     * 以(exchangeId, instrumentId, targetDate)为键发送无序bulk upsert，每BULK_BATCH_SIZE行一次往返。
+     * 同一批次内键重复的行只保留最后一条，其余计入merged。
+     */
+    public BatchSaveResult saveOrUpdateAll(List<StockAnalysisResult> stockAnalysisResults) {
+        BatchSaveResult result = new BatchSaveResult(stockAnalysisResults.size());
+
+        // 按键去重，保留最后一条；值为该行在请求列表中的下标
+        Map<String, Integer> latestIndexByKey = new LinkedHashMap<>();
+        for (int i = 0; i < stockAnalysisResults.size(); i++) {
+            StockAnalysisResult row = stockAnalysisResults.get(i);
+            if (row == null || row.getExchangeId() == null || row.getInstrumentId() == null
+                    || row.getTargetDate() == null) {
+                result.addError(i, "exchangeId、instrumentId、targetDate不能为空");
+                continue;
+            }
+            String key = row.getExchangeId() + ":" + row.getInstrumentId() + ":" + row.getTargetDate().getTime();
+            if (latestIndexByKey.put(key, i) != null) {
+                result.setMerged(result.getMerged() + 1);
+            }
+        }
+
+        List<Integer> indexes = new ArrayList<>(latestIndexByKey.values());
+        for (int from = 0; from < indexes.size(); from += BULK_BATCH_SIZE) {
+            List<Integer> chunk = indexes.subList(from, Math.min(from + BULK_BATCH_SIZE, indexes.size()));
+            executeBulkUpsert(stockAnalysisResults, chunk, result);
+        }
+
+        // 按合约逐行、按日期汇总通知缓存，写入失败的行跳过
+        Set<Integer> failed = result.getErrors().stream()
+                .map(BatchSaveResult.RowError::getIndex)
+                .collect(Collectors.toSet());
+        Set<Date> touchedDates = new HashSet<>();
+        List<StockAnalysisResult> written = new ArrayList<>(indexes.size());
+        for (Integer index : indexes) {
+            if (failed.contains(index)) {
+                continue;
+            }
+            StockAnalysisResult row = stockAnalysisResults.get(index);
+            dataVersionTracker.onWrite(null, row.getExchangeId(), row.getInstrumentId());
+            instrumentHistoryIndex.onUpsert(row);
+            touchedDates.add(row.getTargetDate());
+            written.add(row);
+        }
+        instrumentSearchIndex.onUpsert(written);
+        touchedDates.forEach(targetDate -> afterWrite(targetDate, null, null));
+        return result;
+    }
+
+    private void executeBulkUpsert(List<StockAnalysisResult> rows, List<Integer> chunk, BatchSaveResult result) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockAnalysisResult.class);
+        for (Integer index : chunk) {
+            StockAnalysisResult row = rows.get(index);
+            assignKeys(row);
+            bulkOps.replaceOne(Query.query(Criteria.where("id").is(row.getId())), row,
+                    FindAndReplaceOptions.options().upsert());
+        }
+
+        BulkWriteResult writeResult;
+        try {
+            writeResult = bulkOps.execute();
+        } catch (BulkOperationException e) {
+            // 无序模式下其余行仍会写入，只记录失败的行
+            writeResult = e.getResult();
+            for (BulkWriteError error : e.getErrors()) {
+                result.addError(chunk.get(error.getIndex()), error.getMessage());
+            }
+        }
+        result.setInserted(result.getInserted() + writeResult.getUpserts().size());
+        result.setUpdated(result.getUpdated() + writeResult.getMatchedCount());
+    }
+
+    /**
+     * 由自然键填充_id和trade_date，自然键不完整时保留原id
+     */
+    private static void assignKeys(StockAnalysisResult row) {
+        String naturalId = StockAnalysisIds.of(row);
+        if (naturalId != null) {
+            row.setId(naturalId);
         }
+        row.setTradeDate(row.getTargetDate() != null ? TradingDates.toDateKey(row.getTargetDate()) : null);
     }
 
     /**
@@ -70,6 +235,168 @@ public class StockAnalysisResultService {
         return repository.findAll();
     }
 
+    /**
+     * 按(tradeDate, exchangeId, instrumentId)键集分页查询，只读取fields中的字段
+     * cursor为上一页返回的nextCursor，为null时从第一页开始；cursor无效时抛出IllegalArgumentException
+     * tradeDate为空的行（尚未回填）没有分页键，不参与分页
+     */
+    public CursorPage findPage(String cursor, int size, List<String> fields) {
+        return findPage(new StockAnalysisQuery(), cursor, size, fields);
+    }
+
+    /**
+     * 按组合查询条件过滤后的键集分页，排序和cursor与findPage(cursor, size, fields)相同
+     */
+    public CursorPage findPage(StockAnalysisQuery searchQuery, String cursor, int size, List<String> fields) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Criteria keyset;
+        if (cursor != null) {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            int tradeDate = after.getTradeDate();
+            // 外层的gte让查询按索引前缀定界，$or只过滤边界日期内的行
+            keyset = Criteria.where("tradeDate").gte(tradeDate).orOperator(
+                    Criteria.where("tradeDate").gt(tradeDate),
+                    Criteria.where("exchangeId").gt(after.getExchangeId()),
+                    Criteria.where("exchangeId").is(after.getExchangeId())
+                            .and("instrumentId").gt(after.getInstrumentId()));
+        } else {
+            keyset = Criteria.where("tradeDate").ne(null);
+        }
+        // 过滤条件中也可能有tradeDate，两者用$and组合
+        Criteria criteria = searchQuery.hasFilters()
+                ? new Criteria().andOperator(toCriteria(searchQuery), keyset)
+                : keyset;
+        Query query = new Query(criteria).with(PAGE_SORT).limit(pageSize + 1);
+        query.fields().include("tradeDate", "targetDate", "exchangeId", "instrumentId");
+        for (String field : fields) {
+            query.fields().include(field);
+        }
+
+        List<StockAnalysisResult> rows = mongoTemplate.find(query, StockAnalysisResult.class);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            StockAnalysisResult last = rows.get(pageSize - 1);
+            nextCursor = new KeysetCursor(last.getTradeDate(), last.getExchangeId(), last.getInstrumentId())
+                    .encode();
+        }
+        List<Map<String, Object>> items = new ArrayList<>(rows.size());
+        for (StockAnalysisResult row : rows) {
+            items.add(StockAnalysisFields.project(row, fields));
+        }
+        return new CursorPage(items, nextCursor);
+    }
+
+    /**
+     * 组合查询，所有条件在一次查询中同时生效，排序和取前N条由数据库完成
+     * 未指定sort时按(tradeDate, exchangeId, instrumentId)排序；sort字段无效时抛出IllegalArgumentException
+     * limit最大为MAX_PAGE_SIZE，未指定limit时最多返回DEFAULT_PAGE_SIZE行，需要全部结果时使用findPage分页
+     */
+    public List<Map<String, Object>> search(StockAnalysisQuery searchQuery, List<String> fields) {
+        Query query = new Query(toCriteria(searchQuery)).with(toSort(searchQuery.getSort()))
+                .limit(toLimit(searchQuery.getLimit()));
+        for (String field : fields) {
+            query.fields().include(field);
+        }
+        List<StockAnalysisResult> rows = mongoTemplate.find(query, StockAnalysisResult.class);
+        List<Map<String, Object>> items = new ArrayList<>(rows.size());
+        for (StockAnalysisResult row : rows) {
+            items.add(StockAnalysisFields.project(row, fields));
+        }
+        return items;
+    }
+
+    /**
+     * 将组合查询条件转换为Criteria，日期条件按交易日整数比较且放在最前，以便使用trade_date开头的索引
+     */
+    public Criteria toCriteria(StockAnalysisQuery searchQuery) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (searchQuery.getTargetDate() != null) {
+            criteria.add(Criteria.where("tradeDate").is(TradingDates.toDateKey(searchQuery.getTargetDate())));
+        }
+        if (searchQuery.getFrom() != null || searchQuery.getTo() != null) {
+            criteria.add(range("tradeDate",
+                    searchQuery.getFrom() != null ? TradingDates.toDateKey(searchQuery.getFrom()) : null,
+                    searchQuery.getTo() != null ? TradingDates.toDateKey(searchQuery.getTo()) : null));
+        }
+        if (searchQuery.getExchangeId() != null) {
+            criteria.add(Criteria.where("exchangeId").is(searchQuery.getExchangeId()));
+        }
+        if (searchQuery.getInstrumentId() != null) {
+            criteria.add(Criteria.where("instrumentId").is(searchQuery.getInstrumentId()));
+        }
+        if (searchQuery.getMinRanking() != null || searchQuery.getMaxRanking() != null) {
+            criteria.add(range("ranking", searchQuery.getMinRanking(), searchQuery.getMaxRanking()));
+        }
+        if (searchQuery.getMinScore() != null || searchQuery.getMaxScore() != null) {
+            criteria.add(range("score", searchQuery.getMinScore(), searchQuery.getMaxScore()));
+        }
+        if (searchQuery.getMinAmount() != null) {
+            criteria.add(Criteria.where("amount").gte(searchQuery.getMinAmount()));
+        }
+        if (searchQuery.getName() != null && !searchQuery.getName().isEmpty()) {
+            criteria.add(Criteria.where("instrumentName")
+                    .regex(Pattern.quote(searchQuery.getName()), "i"));
+        }
+        if (criteria.isEmpty()) {
+            return new Criteria();
+        }
+        return criteria.size() == 1 ? criteria.get(0) : new Criteria().andOperator(criteria);
+    }
+
+    private static Criteria range(String field, Object min, Object max) {
+        Criteria criteria = Criteria.where(field);
+        if (min != null) {
+            criteria.gte(min);
+        }
+        if (max != null) {
+            criteria.lte(max);
+        }
+        return criteria;
+    }
+
+    /**
+     * 组合查询的行数上限：未指定时为DEFAULT_PAGE_SIZE，最大为MAX_PAGE_SIZE
+     */
+    static int toLimit(Integer limit) {
+        return limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * 解析sort参数，字段无效时抛出IllegalArgumentException
+     */
+    static Sort toSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return PAGE_SORT;
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        for (String part : sort.split(",")) {
+            String field = part.trim();
+            boolean descending = field.startsWith("-");
+            if (descending) {
+                field = field.substring(1);
+            }
+            if (!StockAnalysisFields.contains(field)) {
+                throw new IllegalArgumentException("未知排序字段: " + field);
+            }
+            addOrder(orders, descending ? Sort.Order.desc(field) : Sort.Order.asc(field));
+        }
+        // 以分页键作为并列时的次序，保证结果稳定
+        for (Sort.Order order : PAGE_SORT) {
+            addOrder(orders, order);
+        }
+        return Sort.by(orders);
+    }
+
+    private static void addOrder(List<Sort.Order> orders, Sort.Order order) {
+        for (Sort.Order existing : orders) {
+            if (existing.getProperty().equals(order.getProperty())) {
+                return;
+            }
+        }
+        orders.add(order);
+    }
+
     /**
      * 根据交易所代码和合约代码查询
      */
@@ -78,18 +405,37 @@ public class StockAnalysisResultService {
     }
 
     /**
-     * 根据目标日期查询
+     * 根据目标日期查询，按交易日匹配，与时刻无关
      */
     public List<StockAnalysisResult> findByTargetDate(Date targetDate) {
-        return repository.findByTargetDate(targetDate);
+        return repository.findByTradeDate(TradingDates.toDateKey(targetDate));
     }
 
     /**
-     * 根据交易所代码、合约代码和目标日期查询
+     * 根据交易所代码、合约代码和目标日期查询，任一参数为null时返回空
      */
     public Optional<StockAnalysisResult> findByExchangeIdAndInstrumentIdAndTargetDate(
             String exchangeId, String instrumentId, Date targetDate) {
-        return repository.findByExchangeIdAndInstrumentIdAndTargetDate(exchangeId, instrumentId, targetDate);
+        if (exchangeId == null || instrumentId == null || targetDate == null) {
+            return Optional.empty();
+        }
+        return repository.findById(StockAnalysisIds.of(exchangeId, instrumentId, targetDate));
+    }
+
+    /**
+     * 查询单个合约在日期区间[from, to]内的数据，按日期升序
+     */
+    public List<StockAnalysisResult> findByExchangeIdAndInstrumentIdAndTargetDateRange(
+            String exchangeId, String instrumentId, Date from, Date to) {
+        return repository.findByExchangeIdAndInstrumentIdAndTradeDateRange(exchangeId, instrumentId,
+                TradingDates.toDateKey(from), TradingDates.toDateKey(to));
+    }
+
+    /**
+     * 查询日期区间[from, to]内的全部数据
+     */
+    public List<StockAnalysisResult> findByTargetDateRange(Date from, Date to) {
+        return repository.findByTradeDateRange(TradingDates.toDateKey(from), TradingDates.toDateKey(to));
     }
 
     /**
@@ -108,11 +454,15 @@ public class StockAnalysisResultService {
 
     /**
      * 更新股票分析结果
+     * 自然键被修改时记录移到新键对应的_id下，返回结果的id随之改变
      */
     public StockAnalysisResult update(String id, StockAnalysisResult stockAnalysisResult) {
         Optional<StockAnalysisResult> existing = repository.findById(id);
         if (existing.isPresent()) {
             StockAnalysisResult existingResult = existing.get();
+            Date previousDate = existingResult.getTargetDate();
+            String previousExchangeId = existingResult.getExchangeId();
+            String previousInstrumentId = existingResult.getInstrumentId();
             existingResult.setExchangeId(stockAnalysisResult.getExchangeId());
             existingResult.setInstrumentId(stockAnalysisResult.getInstrumentId());
             existingResult.setInstrumentName(stockAnalysisResult.getInstrumentName());
@@ -123,7 +473,17 @@ public class StockAnalysisResultService {
             existingResult.setScoreChange(stockAnalysisResult.getScoreChange());
             existingResult.setRankingChange(stockAnalysisResult.getRankingChange());
             existingResult.setTargetDate(stockAnalysisResult.getTargetDate());
-            return repository.save(existingResult);
+            StockAnalysisResult saved = save(existingResult);
+            if (!id.equals(saved.getId())) {
+                repository.deleteById(id);
+            }
+            // 日期或合约被修改时，原日期和原合约上的这条记录相当于被删除
+            if (!Objects.equals(previousDate, saved.getTargetDate())
+                    || !Objects.equals(previousExchangeId, saved.getExchangeId())
+                    || !Objects.equals(previousInstrumentId, saved.getInstrumentId())) {
+                afterRemove(previousDate, previousExchangeId, previousInstrumentId);
+            }
+            return saved;
         }
         return null;
     }
@@ -132,8 +492,11 @@ public class StockAnalysisResultService {
      * 根据ID删除
      */
     public boolean deleteById(String id) {
-        if (repository.existsById(id)) {
+        Optional<StockAnalysisResult> existing = repository.findById(id);
+        if (existing.isPresent()) {
             repository.deleteById(id);
+            StockAnalysisResult deleted = existing.get();
+            afterRemove(deleted.getTargetDate(), deleted.getExchangeId(), deleted.getInstrumentId());
             return true;
         }
         return false;
@@ -144,15 +507,207 @@ public class StockAnalysisResultService {
      */
     public void deleteAll() {
         repository.deleteAll();
+        dataVersionTracker.onWriteAll();
+        latestSnapshotCache.invalidate();
+        encodedResponseCache.evict(null);
+        instrumentHistoryIndex.invalidateAll();
+        instrumentSearchIndex.invalidateAll();
+        tradingDayPublisher.reset();
     }
 
     /**
      * 获取最新日期
      */
     public Date findLatestDate() {
-        StockAnalysisResult result = repository.findFirstByOrderByTargetDateDesc();
-        return result != null ? result.getTargetDate() : null;
+        return latestSnapshotCache.get().getTargetDate();
+    }
+
+    /**
+     * 获取最新日期的内存快照
+     */
+    public LatestSnapshotCache.Snapshot getLatestSnapshot() {
+        return latestSnapshotCache.get();
+    }
+
+    /**
+     * 提交（发布）一个交易日，仅staged发布模式可用
+     * 发布后/latest等接口整体切换到该交易日；该日期没有数据时抛出IllegalArgumentException，
+     * auto模式下抛出IllegalStateException
+     */
+    public LatestSnapshotCache.Snapshot commitDay(Date targetDate) {
+        if (!tradingDayPublisher.isStaged()) {
+            throw new IllegalStateException("当前为auto发布模式，写入即可见，无需提交");
+        }
+        int tradeDate = TradingDates.toDateKey(targetDate);
+        if (!mongoTemplate.exists(Query.query(Criteria.where("tradeDate").is(tradeDate)), StockAnalysisResult.class)) {
+            throw new IllegalArgumentException("该日期没有数据: " + tradeDate);
+        }
+        return latestSnapshotCache.publish(tradeDate);
+    }
+
+    /**
+     * 获取最新日期数据的预序列化响应
+     */
+    public EncodedResponseCache.EncodedBody getLatestEncoded() {
+        return encodedResponseCache.getLatest();
+    }
+
+    /**
+     * 获取指定日期数据的预序列化响应
+     */
+    public EncodedResponseCache.EncodedBody getEncodedByTargetDate(Date targetDate) {
+        return encodedResponseCache.getDay(targetDate);
+    }
+
+    /**
+     * 获取指定日期的数据版本
+     */
+    public DataVersionTracker.Version getDateVersion(Date targetDate) {
+        return dataVersionTracker.getDateVersion(targetDate);
+    }
+
+    /**
+     * 获取指定合约的数据版本
+     */
+    public DataVersionTracker.Version getInstrumentVersion(String exchangeId, String instrumentId) {
+        return dataVersionTracker.getInstrumentVersion(exchangeId, instrumentId);
     }
-}
 
+    /**
+     * 生成ETag
+     */
+    public String eTag(String scope, DataVersionTracker.Version version, String variant) {
+        return dataVersionTracker.eTag(scope, version, variant);
+    }
+
+    /**
+     * 获取合约的列式历史，from/to为null时不限制
+     */
+    public InstrumentHistory getHistory(String exchangeId, String instrumentId, Date from, Date to) {
+        return slice(instrumentHistoryIndex.get(exchangeId, instrumentId), from, to);
+    }
+
+    /**
+     * 获取合约的列式历史并降采样：先按interval聚合为周/月K线，点数仍超过maxPoints时再用LTTB选点
+     * maxPoints为null时不限制点数
+     */
+    public InstrumentHistory getHistory(String exchangeId, String instrumentId, Date from, Date to,
+                                        HistoryDownsampler.Interval interval, Integer maxPoints) {
+        return downsample(getHistory(exchangeId, instrumentId, from, to), interval, maxPoints);
+    }
+
+    /**
+     * 批量获取多个合约的列式历史，返回顺序与请求一致（重复的合约只返回一次）
+     * 未加载的合约用$in查询一次性加载
+     */
+    public List<InstrumentHistory> getHistories(List<InstrumentKey> instruments, Date from, Date to,
+                                                HistoryDownsampler.Interval interval, Integer maxPoints) {
+        List<String[]> keys = new ArrayList<>(instruments.size());
+        for (InstrumentKey instrument : instruments) {
+            keys.add(new String[]{instrument.getExchangeId(), instrument.getInstrumentId()});
+        }
+        List<InstrumentHistory> histories = new ArrayList<>(keys.size());
+        for (InstrumentHistoryIndex.Series series : instrumentHistoryIndex.getAll(keys)) {
+            histories.add(downsample(slice(series, from, to), interval, maxPoints));
+        }
+        return histories;
+    }
+
+    private static InstrumentHistory downsample(InstrumentHistory history, HistoryDownsampler.Interval interval,
+                                                Integer maxPoints) {
+        InstrumentHistory result = HistoryDownsampler.aggregate(history, interval);
+        return maxPoints != null ? HistoryDownsampler.lttb(result, maxPoints) : result;
+    }
+
+    private static InstrumentHistory slice(InstrumentHistoryIndex.Series series, Date from, Date to) {
+        int start = from != null ? series.lowerBound(TradingDates.toDateKey(from)) : 0;
+        int end = to != null ? series.upperBound(TradingDates.toDateKey(to)) : series.size();
+        end = Math.max(start, end);
+        return new InstrumentHistory(series.getExchangeId(), series.getInstrumentId(), series.getInstrumentName(),
+                Arrays.copyOfRange(series.getDates(), start, end),
+                Arrays.copyOfRange(series.getClose(), start, end),
+                Arrays.copyOfRange(series.getAmount(), start, end),
+                Arrays.copyOfRange(series.getScore(), start, end),
+                Arrays.copyOfRange(series.getRanking(), start, end));
+    }
+
+    /**
+     * 按日期区间和交易所过滤，以NDJSON或CSV流式写出，返回写出的行数
+     */
+    public long export(OutputStream out, StockAnalysisExporter.Format format, Date from, Date to,
+                       String exchangeId, List<String> fields) throws IOException {
+        return stockAnalysisExporter.export(out, format, from, to, exchangeId, fields);
+    }
+
+    /**
+     * 按代码或名称联想合约，查询内存中的搜索索引
+     */
+    public List<InstrumentSuggestion> suggest(String query, int limit) {
+        return instrumentSearchIndex.suggest(query, limit);
+    }
+
+    /**
+     * 某一交易日的横截面统计，各榜单保留前top条（不超过DailyAnalyticsCache.MAX_TOP）
+     */
+    public DailyAnalytics getAnalytics(Date targetDate, int top) {
+        return dailyAnalyticsCache.get(targetDate)
+                .limitTo(Math.max(1, Math.min(top, DailyAnalyticsCache.MAX_TOP)));
+    }
+
+    /**
+     * 根据某一交易日的score重算排名、scoreChange和rankingChange并写回
+     */
+    public RankingRunResult recomputeRankings(Date targetDate) {
+        long start = System.nanoTime();
+        RankingPipeline.DayResult day = rankingPipeline.recompute(targetDate);
+        for (StockAnalysisResult row : day.getRows()) {
+            dataVersionTracker.onWrite(null, row.getExchangeId(), row.getInstrumentId());
+            instrumentHistoryIndex.onUpsert(row);
+        }
+        afterWrite(targetDate, null, null);
+        return new RankingRunResult(1, day.getRowCount(), day.getModified(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 回填[from, to]区间内每个交易日的排名和变化量，参数为null时不限制
+     * 涉及的日期和合约较多，完成后整体失效各级缓存
+     */
+    public RankingRunResult backfillRankings(Date from, Date to) {
+        long start = System.nanoTime();
+        List<RankingPipeline.DayResult> days = rankingPipeline.backfill(from, to);
+        long rows = 0;
+        long modified = 0;
+        for (RankingPipeline.DayResult day : days) {
+            rows += day.getRowCount();
+            modified += day.getModified();
+        }
+        if (!days.isEmpty()) {
+            dataVersionTracker.onWriteAll();
+            latestSnapshotCache.invalidate();
+            encodedResponseCache.evict(null);
+            instrumentHistoryIndex.invalidateAll();
+        }
+        return new RankingRunResult(days.size(), rows, modified, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void afterUpsert(StockAnalysisResult row) {
+        afterWrite(row.getTargetDate(), row.getExchangeId(), row.getInstrumentId());
+        instrumentHistoryIndex.onUpsert(row);
+        instrumentSearchIndex.onUpsert(List.of(row));
+    }
 
+    private void afterRemove(Date targetDate, String exchangeId, String instrumentId) {
+        afterWrite(targetDate, exchangeId, instrumentId);
+        instrumentHistoryIndex.invalidate(exchangeId, instrumentId);
+    }
+
+    /**
+     * 写入某一日期、某一合约的数据后更新版本并通知各级缓存
+     */
+    private void afterWrite(Date targetDate, String exchangeId, String instrumentId) {
+        dataVersionTracker.onWrite(targetDate, exchangeId, instrumentId);
+        latestSnapshotCache.onWrite(targetDate);
+        encodedResponseCache.evict(targetDate);
+    }
+}
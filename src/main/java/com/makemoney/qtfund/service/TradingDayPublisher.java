@@ -0,0 +1,115 @@
+package com.makemoney.qtfund.service;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.entity.TradingDayPublication;
+import com.makemoney.qtfund.repository.StockAnalysisResultRepository;
+import com.makemoney.qtfund.repository.TradingDayPublicationRepository;
+import com.makemoney.qtfund.util.TradingDates;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 交易日发布指针的读写
+ * auto模式下最新日期即数据库中最大的交易日，写入后立即可见；
+ * staged模式下最新日期为发布指针指向的交易日，新交易日写完后调用提交才对读取可见
+ */
+@Component
+public class TradingDayPublisher {
+
+    private static final String POINTER_ID = "stock_analysis_result";
+
+    @Autowired
+    private TradingDayPublicationRepository repository;
+
+    @Autowired
+    private StockAnalysisResultRepository stockAnalysisResultRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * 发布模式：auto或staged
+     */
+    @Value("${qtfund.publish.mode:auto}")
+    private String mode;
+
+    private volatile TradingDayPublication current;
+
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        if (!"auto".equalsIgnoreCase(mode) && !"staged".equalsIgnoreCase(mode)) {
+            throw new IllegalStateException("qtfund.publish.mode只能为auto或staged: " + mode);
+        }
+    }
+
+    public boolean isStaged() {
+        return "staged".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 当前发布指针，首次读取时从数据库加载；
+     * 数据库中还没有指针时以当前最大的交易日初始化，使切换到staged模式时已有数据保持可见
+     */
+    public TradingDayPublication getCurrent() {
+        TradingDayPublication publication = current;
+        if (publication != null) {
+            return publication;
+        }
+        loadLock.lock();
+        try {
+            if (current == null) {
+                current = repository.findById(POINTER_ID).orElseGet(() -> {
+                    StockAnalysisResult latest = stockAnalysisResultRepository.findFirstByOrderByTradeDateDesc();
+                    return publish(latest != null ? TradingDates.toDateKey(latest) : null);
+                });
+            }
+            return current;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * 已发布的交易日，尚未发布任何交易日时返回null
+     */
+    public Integer getPublishedTradeDate() {
+        return getCurrent().getTradeDate();
+    }
+
+    /**
+     * 将发布指针指向tradeDate（可以是更早的交易日，用于回退），版本号加一
+     */
+    public TradingDayPublication publish(Integer tradeDate) {
+        TradingDayPublication publication = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(POINTER_ID)),
+                new Update().set("tradeDate", tradeDate).set("publishedAt", new Date()).inc("version", 1),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                TradingDayPublication.class);
+        current = publication;
+        return publication;
+    }
+
+    /**
+     * 全部数据删除后调用：staged模式下指针置空，auto模式下删除指针
+     */
+    public void reset() {
+        if (isStaged()) {
+            publish(null);
+        } else {
+            repository.deleteAll();
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.makemoney.qtfund.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 应用内缓存的命中/未命中计数，指标名与Micrometer的缓存指标一致：cache.gets{cache, result=hit|miss}，
+ * 命中率由监控端按 hit / (hit + miss) 计算
+ */
+public final class CacheMeters {
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private CacheMeters(Counter hits, Counter misses) {
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    public static CacheMeters register(MeterRegistry registry, String cache) {
+        return new CacheMeters(counter(registry, cache, "hit"), counter(registry, cache, "miss"));
+    }
+
+    private static Counter counter(MeterRegistry registry, String cache, String result) {
+        return Counter.builder("cache.gets")
+                .description("应用内缓存的查询次数")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public void hits(int count) {
+        if (count > 0) {
+            hits.increment(count);
+        }
+    }
+
+    public void misses(int count) {
+        if (count > 0) {
+            misses.increment(count);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.makemoney.qtfund.util;
+
+import com.makemoney.qtfund.dto.InstrumentHistory;
+
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.Arrays;
+
+/**
+ * 列式历史的降采样
+ * 按周或按月聚合为K线（收盘取区间内最后一个close，score取均值，ranking取最好名次，amount求和），
+ * 或用LTTB（Largest-Triangle-Three-Buckets）按close保留最多maxPoints个点
+ */
+public final class HistoryDownsampler {
+
+    /**
+     * 聚合周期
+     */
+    public enum Interval {
+        DAY, WEEK, MONTH
+    }
+
+    private HistoryDownsampler() {
+    }
+
+    /**
+     * 按周期聚合，DAY时原样返回；每根K线的日期为该周期内最后一个交易日
+     */
+    public static InstrumentHistory aggregate(InstrumentHistory history, Interval interval) {
+        if (interval == Interval.DAY) {
+            return history;
+        }
+        int[] dates = history.getDates();
+        int n = dates.length;
+        int[] outDates = new int[n];
+        double[] outClose = new double[n];
+        double[] outAmount = new double[n];
+        double[] outScore = new double[n];
+        int[] outRanking = new int[n];
+        int bars = 0;
+        int start = 0;
+        while (start < n) {
+            long period = period(dates[start], interval);
+            int end = start + 1;
+            while (end < n && period(dates[end], interval) == period) {
+                end++;
+            }
+            outDates[bars] = dates[end - 1];
+            outClose[bars] = lastValue(history.getClose(), start, end);
+            outAmount[bars] = sum(history.getAmount(), start, end);
+            outScore[bars] = mean(history.getScore(), start, end);
+            outRanking[bars] = bestRanking(history.getRanking(), start, end);
+            bars++;
+            start = end;
+        }
+        return new InstrumentHistory(history.getExchangeId(), history.getInstrumentId(), history.getInstrumentName(),
+                Arrays.copyOf(outDates, bars), Arrays.copyOf(outClose, bars), Arrays.copyOf(outAmount, bars),
+                Arrays.copyOf(outScore, bars), Arrays.copyOf(outRanking, bars));
+    }
+
+    /**
+     * LTTB降采样，按close选点，保留首尾两点；点数不超过maxPoints时原样返回
+     */
+    public static InstrumentHistory lttb(InstrumentHistory history, int maxPoints) {
+        int n = history.getDates().length;
+        if (maxPoints >= n) {
+            return history;
+        }
+        if (maxPoints < 3) {
+            return select(history, endpoints(n, maxPoints));
+        }
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = TradingDates.toLocalDate(history.getDates()[i]).toEpochDay();
+        }
+        double[] y = history.getClose();
+
+        int[] selected = new int[maxPoints];
+        selected[0] = 0;
+        double bucketSize = (double) (n - 2) / (maxPoints - 2);
+        int previous = 0;
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+
+            // 下一个桶的平均点，最后一个桶之后只有终点
+            int nextStart = end;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, n);
+            if (bucket == maxPoints - 3) {
+                nextStart = n - 1;
+                nextEnd = n;
+            }
+            double avgX = 0;
+            double avgY = 0;
+            int count = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += x[i];
+                if (!Double.isNaN(y[i])) {
+                    avgY += y[i];
+                    count++;
+                }
+            }
+            avgX /= nextEnd - nextStart;
+            avgY = count > 0 ? avgY / count : y[previous];
+
+            int chosen = start;
+            double maxArea = -1;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((x[previous] - avgX) * (y[i] - y[previous])
+                        - (x[previous] - x[i]) * (avgY - y[previous]));
+                // NaN不会大于maxArea，缺失close的点不会被选中
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            selected[bucket + 1] = chosen;
+            previous = chosen;
+        }
+        selected[maxPoints - 1] = n - 1;
+        return select(history, selected);
+    }
+
+    private static int[] endpoints(int n, int maxPoints) {
+        if (maxPoints <= 0) {
+            return new int[0];
+        }
+        return maxPoints == 1 ? new int[]{n - 1} : new int[]{0, n - 1};
+    }
+
+    private static InstrumentHistory select(InstrumentHistory history, int[] indexes) {
+        int[] dates = new int[indexes.length];
+        double[] close = new double[indexes.length];
+        double[] amount = new double[indexes.length];
+        double[] score = new double[indexes.length];
+        int[] ranking = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            dates[i] = history.getDates()[index];
+            close[i] = history.getClose()[index];
+            amount[i] = history.getAmount()[index];
+            score[i] = history.getScore()[index];
+            ranking[i] = history.getRanking()[index];
+        }
+        return new InstrumentHistory(history.getExchangeId(), history.getInstrumentId(), history.getInstrumentName(),
+                dates, close, amount, score, ranking);
+    }
+
+    private static long period(int dateKey, Interval interval) {
+        if (interval == Interval.MONTH) {
+            return dateKey / 100;
+        }
+        LocalDate date = TradingDates.toLocalDate(dateKey);
+        return date.get(IsoFields.WEEK_BASED_YEAR) * 100L + date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+    }
+
+    private static double lastValue(double[] values, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
+            if (!Double.isNaN(values[i])) {
+                return values[i];
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static double sum(double[] values, int start, int end) {
+        double sum = 0;
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (!Double.isNaN(values[i])) {
+                sum += values[i];
+                count++;
+            }
+        }
+        return count > 0 ? sum : Double.NaN;
+    }
+
+    private static double mean(double[] values, int start, int end) {
+        double sum = 0;
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (!Double.isNaN(values[i])) {
+                sum += values[i];
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    private static int bestRanking(int[] rankings, int start, int end) {
+        int best = 0;
+        for (int i = start; i < end; i++) {
+            if (rankings[i] > 0 && (best == 0 || rankings[i] < best)) {
+                best = rankings[i];
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,61 @@
+package com.makemoney.qtfund.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 按(tradeDate, exchangeId, instrumentId)分页的续页令牌
+ * 记录上一页最后一行的键，编码为URL安全的Base64字符串，对调用方不透明
+ */
+public final class KeysetCursor {
+
+    private static final char SEPARATOR = '\n';
+
+    private final int tradeDate;
+
+    private final String exchangeId;
+
+    private final String instrumentId;
+
+    public KeysetCursor(int tradeDate, String exchangeId, String instrumentId) {
+        this.tradeDate = tradeDate;
+        this.exchangeId = exchangeId;
+        this.instrumentId = instrumentId;
+    }
+
+    /**
+     * 编码为令牌
+     */
+    public String encode() {
+        String raw = tradeDate + String.valueOf(SEPARATOR) + exchangeId + SEPARATOR + instrumentId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析令牌，格式不正确时抛出IllegalArgumentException
+     */
+    public static KeysetCursor decode(String token) {
+        String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                .split(String.valueOf(SEPARATOR), -1);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("无效的cursor");
+        }
+        try {
+            return new KeysetCursor(Integer.parseInt(parts[0]), parts[1], parts[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的cursor", e);
+        }
+    }
+
+    public int getTradeDate() {
+        return tradeDate;
+    }
+
+    public String getExchangeId() {
+        return exchangeId;
+    }
+
+    public String getInstrumentId() {
+        return instrumentId;
+    }
+}
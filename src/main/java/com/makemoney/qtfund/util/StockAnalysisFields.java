@@ -0,0 +1,92 @@
+package com.makemoney.qtfund.util;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * StockAnalysisResult可投影字段的白名单
+ * 按JSON属性名解析fields=参数，并按字段取值，保持与实体序列化时相同的属性名和顺序
+ */
+public final class StockAnalysisFields {
+
+    private static final Map<String, Function<StockAnalysisResult, Object>> ACCESSORS;
+
+    static {
+        Map<String, Function<StockAnalysisResult, Object>> accessors = new LinkedHashMap<>();
+        accessors.put("id", StockAnalysisResult::getId);
+        accessors.put("exchangeId", StockAnalysisResult::getExchangeId);
+        accessors.put("instrumentId", StockAnalysisResult::getInstrumentId);
+        accessors.put("instrumentName", StockAnalysisResult::getInstrumentName);
+        accessors.put("close", StockAnalysisResult::getClose);
+        accessors.put("amount", StockAnalysisResult::getAmount);
+        accessors.put("score", StockAnalysisResult::getScore);
+        accessors.put("ranking", StockAnalysisResult::getRanking);
+        accessors.put("scoreChange", StockAnalysisResult::getScoreChange);
+        accessors.put("rankingChange", StockAnalysisResult::getRankingChange);
+        accessors.put("targetDate", StockAnalysisResult::getTargetDate);
+        accessors.put("tradeDate", StockAnalysisResult::getTradeDate);
+        ACCESSORS = Collections.unmodifiableMap(accessors);
+    }
+
+    /**
+     * 全部字段
+     */
+    public static final List<String> ALL = List.copyOf(ACCESSORS.keySet());
+
+    private StockAnalysisFields() {
+    }
+
+    /**
+     * 解析逗号分隔的字段列表，为空时返回全部字段，包含未知字段时抛出IllegalArgumentException
+     */
+    public static List<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!ACCESSORS.containsKey(name)) {
+                throw new IllegalArgumentException("未知字段: " + name);
+            }
+            parsed.add(name);
+        }
+        return parsed.isEmpty() ? ALL : new ArrayList<>(parsed);
+    }
+
+    /**
+     * 是否为可投影/排序的字段
+     */
+    public static boolean contains(String field) {
+        return ACCESSORS.containsKey(field);
+    }
+
+    /**
+     * 取出指定字段，返回 属性名 -> 值
+     */
+    public static Map<String, Object> project(StockAnalysisResult row, List<String> fields) {
+        Map<String, Object> projected = new LinkedHashMap<>(fields.size() * 2);
+        for (String field : fields) {
+            projected.put(field, ACCESSORS.get(field).apply(row));
+        }
+        return projected;
+    }
+
+    /**
+     * 取单个字段的值
+     */
+    public static Object get(StockAnalysisResult row, String field) {
+        return ACCESSORS.get(field).apply(row);
+    }
+}
@@ -0,0 +1,32 @@
+package com.makemoney.qtfund.util;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+
+import java.util.Date;
+
+/**
+ * 由自然键(exchangeId, instrumentId, 交易日)生成确定的_id，如 SZ:159206:20240115
+ * 只取targetDate所在的交易日（与trade_date一致），同一交易日内不同时刻的记录对应同一个_id
+ */
+public final class StockAnalysisIds {
+
+    private StockAnalysisIds() {
+    }
+
+    /**
+     * 自然键对应的_id
+     */
+    public static String of(String exchangeId, String instrumentId, Date targetDate) {
+        return exchangeId + ":" + instrumentId + ":" + TradingDates.toDateKey(targetDate);
+    }
+
+    /**
+     * 行的自然键对应的_id，自然键不完整时返回null
+     */
+    public static String of(StockAnalysisResult row) {
+        if (row.getExchangeId() == null || row.getInstrumentId() == null || row.getTargetDate() == null) {
+            return null;
+        }
+        return of(row.getExchangeId(), row.getInstrumentId(), row.getTargetDate());
+    }
+}
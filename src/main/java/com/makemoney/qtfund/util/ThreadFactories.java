@@ -0,0 +1,22 @@
+package com.makemoney.qtfund.util;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 后台线程的ThreadFactory，按spring.threads.virtual.enabled选择虚拟线程或daemon平台线程
+ */
+public final class ThreadFactories {
+
+    private ThreadFactories() {
+    }
+
+    /**
+     * 以name为线程名前缀的ThreadFactory
+     */
+    public static ThreadFactory named(String name, boolean virtual) {
+        if (virtual) {
+            return Thread.ofVirtual().name(name + "-", 0).factory();
+        }
+        return Thread.ofPlatform().name(name + "-", 0).daemon(true).factory();
+    }
+}
@@ -0,0 +1,61 @@
+package com.makemoney.qtfund.util;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * 交易日与yyyyMMdd整数之间的转换
+ * 统一使用交易所时区EXCHANGE_ZONE，与主机时区无关；接口中@DateTimeFormat解析日期也使用该时区（见DateFormatConfig）
+ */
+public final class TradingDates {
+
+    /**
+     * 交易所时区，交易日、_id和接口日期参数都按该时区换算
+     */
+    public static final ZoneId EXCHANGE_ZONE = ZoneId.of("Asia/Shanghai");
+
+    private TradingDates() {
+    }
+
+    /**
+     * Date转yyyyMMdd整数
+     */
+    public static int toDateKey(Date date) {
+        LocalDate localDate = date.toInstant().atZone(EXCHANGE_ZONE).toLocalDate();
+        return toDateKey(localDate);
+    }
+
+    /**
+     * 行的交易日整数，优先使用已填充的tradeDate，targetDate也为null时返回null
+     */
+    public static Integer toDateKey(StockAnalysisResult row) {
+        if (row.getTradeDate() != null) {
+            return row.getTradeDate();
+        }
+        return row.getTargetDate() != null ? toDateKey(row.getTargetDate()) : null;
+    }
+
+    /**
+     * LocalDate转yyyyMMdd整数
+     */
+    public static int toDateKey(LocalDate date) {
+        return date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    /**
+     * yyyyMMdd整数转LocalDate
+     */
+    public static LocalDate toLocalDate(int dateKey) {
+        return LocalDate.of(dateKey / 10000, dateKey / 100 % 100, dateKey % 100);
+    }
+
+    /**
+     * yyyyMMdd整数转当天零点的Date
+     */
+    public static Date toDate(int dateKey) {
+        return Date.from(toLocalDate(dateKey).atStartOfDay(EXCHANGE_ZONE).toInstant());
+    }
+}
@@ -1,17 +1,54 @@
 package com.makemoney.qtfund;
 
+import com.makemoney.qtfund.config.StockAnalysisIdMigration;
+import com.makemoney.qtfund.config.StockAnalysisTradeDateBackfill;
+import com.makemoney.qtfund.dto.BatchSaveResult;
+import com.makemoney.qtfund.dto.CursorPage;
+import com.makemoney.qtfund.dto.DailyAnalytics;
+import com.makemoney.qtfund.dto.IndicatorSeries;
+import com.makemoney.qtfund.dto.IngestBatchStatus;
+import com.makemoney.qtfund.dto.InstrumentHistory;
+import com.makemoney.qtfund.dto.InstrumentKey;
+import com.makemoney.qtfund.dto.InstrumentSuggestion;
+import com.makemoney.qtfund.dto.RankingRunResult;
+import com.makemoney.qtfund.dto.SnapshotDiff;
+import com.makemoney.qtfund.dto.StockAnalysisQuery;
 import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.service.IndicatorService;
+import com.makemoney.qtfund.service.InstrumentHistoryIndex;
+import com.makemoney.qtfund.service.LatestSnapshotCache;
+import com.makemoney.qtfund.service.ReactiveStockAnalysisResultService;
+import com.makemoney.qtfund.service.SnapshotEventBroadcaster;
+import com.makemoney.qtfund.service.StockAnalysisExporter;
+import com.makemoney.qtfund.service.StockAnalysisIngestService;
 import com.makemoney.qtfund.service.StockAnalysisResultService;
+import com.makemoney.qtfund.service.TradingDayPublisher;
+import com.makemoney.qtfund.util.HistoryDownsampler;
+import com.makemoney.qtfund.util.StockAnalysisIds;
+import com.makemoney.qtfund.util.ThreadFactories;
+import com.makemoney.qtfund.util.TradingDates;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TimeZone;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -21,6 +58,33 @@ class QtFundApplicationTests {
     @Autowired
     private StockAnalysisResultService service;
 
+    @Autowired
+    private IndicatorService indicatorService;
+
+    @Autowired
+    private StockAnalysisIdMigration stockAnalysisIdMigration;
+
+    @Autowired
+    private StockAnalysisTradeDateBackfill stockAnalysisTradeDateBackfill;
+
+    @Autowired
+    private StockAnalysisIngestService ingestService;
+
+    @Autowired
+    private TradingDayPublisher tradingDayPublisher;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ReactiveStockAnalysisResultService reactiveService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private InstrumentHistoryIndex historyIndex;
+
     private StockAnalysisResult testData1;
     private StockAnalysisResult testData2;
     private StockAnalysisResult testData3;
@@ -31,7 +95,7 @@ class QtFundApplicationTests {
         service.deleteAll();
 
         // 创建测试数据
-        Calendar cal = Calendar.getInstance();
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone(TradingDates.EXCHANGE_ZONE));
         cal.set(2024, Calendar.JANUARY, 15, 0, 0, 0);
         cal.set(Calendar.MILLISECOND, 0);
         Date date1 = cal.getTime();
@@ -110,6 +174,22 @@ class QtFundApplicationTests {
         assertEquals(10, saved.getRanking());
     }
 
+    /**
+     * 测试单行upsert：按自然键区分插入和更新，自然键不完整时直接插入
+     */
+    @Test
+    void testUpsert() {
+        assertTrue(service.upsert(testData1));
+        testData1.setScore(91.0);
+        assertFalse(service.upsert(testData1));
+        assertEquals(91.0, service.findById(testData1.getId()).orElseThrow().getScore());
+
+        testData2.setTargetDate(null);
+        assertTrue(service.upsert(testData2));
+        assertNotNull(testData2.getId());
+        assertTrue(service.findByExchangeIdAndInstrumentIdAndTargetDate("SZ", "159206", null).isEmpty());
+    }
+
     /**
      * 测试根据ID查询
      */
@@ -240,7 +320,9 @@ class QtFundApplicationTests {
         StockAnalysisResult updated = service.update(id, updateData);
 
         assertNotNull(updated);
-        assertEquals(id, updated.getId());
+        // 自然键被修改，记录移到新键对应的_id下
+        assertEquals(StockAnalysisIds.of(updated), updated.getId());
+        assertFalse(service.findById(id).isPresent());
         assertEquals("SH", updated.getExchangeId());
         assertEquals("510300", updated.getInstrumentId());
         assertEquals("沪深300ETF", updated.getInstrumentName());
@@ -303,6 +385,606 @@ class QtFundApplicationTests {
         assertEquals(0, results.size());
     }
 
+    /**
+     * 测试批量保存或更新
+     */
+    @Test
+    void testSaveOrUpdateAll() {
+        service.save(testData1);
+
+        StockAnalysisResult changed = new StockAnalysisResult();
+        changed.setExchangeId("SZ");
+        changed.setInstrumentId("159206");
+        changed.setInstrumentName("卫星ETF");
+        changed.setScore(99.0);
+        changed.setRanking(1);
+        changed.setTargetDate(testData1.getTargetDate());
+
+        StockAnalysisResult invalid = new StockAnalysisResult();
+        invalid.setExchangeId("SH");
+
+        BatchSaveResult result = service.saveOrUpdateAll(List.of(changed, testData2, testData3, testData3, invalid));
+
+        assertEquals(5, result.getTotal());
+        assertEquals(2, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getMerged());
+        assertEquals(1, result.getFailed());
+        assertEquals(4, result.getErrors().get(0).getIndex());
+        assertEquals(3, service.findAll().size());
+
+        Optional<StockAnalysisResult> updated = service.findByExchangeIdAndInstrumentIdAndTargetDate(
+                "SZ", "159206", testData1.getTargetDate());
+        assertTrue(updated.isPresent());
+        assertEquals(99.0, updated.get().getScore());
+        assertEquals(1, updated.get().getRanking());
+    }
+
+    /**
+     * 测试最新快照随写入失效
+     */
+    @Test
+    void testLatestSnapshot() {
+        service.save(testData1);
+        assertEquals(testData1.getTargetDate(), service.getLatestSnapshot().getTargetDate());
+        long version = service.getLatestSnapshot().getVersion();
+        assertEquals(version, service.getLatestSnapshot().getVersion());
+
+        service.save(testData3);
+        assertEquals(testData3.getTargetDate(), service.getLatestSnapshot().getTargetDate());
+        assertEquals(1, service.getLatestSnapshot().getRows().size());
+
+        StockAnalysisResult saved = service.save(testData2);
+        long versionBeforeOlderWrite = service.getLatestSnapshot().getVersion();
+        service.deleteById(saved.getId());
+        assertEquals(versionBeforeOlderWrite, service.getLatestSnapshot().getVersion());
+
+        service.deleteAll();
+        assertNull(service.getLatestSnapshot().getTargetDate());
+        assertTrue(service.getLatestSnapshot().getRows().isEmpty());
+    }
+
+    /**
+     * 测试列式历史及其增量更新
+     */
+    @Test
+    void testGetHistory() {
+        service.save(testData1);
+
+        InstrumentHistory history = service.getHistory("SZ", "159206", null, null);
+        assertArrayEquals(new int[]{20240115}, history.getDates());
+
+        service.save(testData2);
+        history = service.getHistory("SZ", "159206", null, null);
+        assertArrayEquals(new int[]{20240115, 20240116}, history.getDates());
+        assertArrayEquals(new double[]{1.25, 1.30}, history.getClose());
+        assertArrayEquals(new int[]{10, 8}, history.getRanking());
+
+        history = service.getHistory("SZ", "159206", testData2.getTargetDate(), null);
+        assertArrayEquals(new int[]{20240116}, history.getDates());
+        assertEquals("卫星ETF", history.getInstrumentName());
+    }
+
+    /**
+     * 测试历史索引不缓存不存在的合约，且超出上限时淘汰最久未访问的合约
+     */
+    @Test
+    void testHistoryIndexBounded() {
+        service.save(testData1);
+        service.save(testData3);
+        Map<?, ?> cached = (Map<?, ?>) ReflectionTestUtils.getField(historyIndex, "seriesByInstrument");
+        Object maxInstruments = ReflectionTestUtils.getField(historyIndex, "maxInstruments");
+        try {
+            ReflectionTestUtils.setField(historyIndex, "maxInstruments", 1);
+            historyIndex.invalidateAll();
+
+            assertEquals(0, historyIndex.get("SZ", "NOT_EXIST").size());
+            assertTrue(cached.isEmpty());
+
+            historyIndex.get("SZ", "159206");
+            historyIndex.get(testData3.getExchangeId(), testData3.getInstrumentId());
+            assertEquals(1, cached.size());
+            assertTrue(cached.containsKey(testData3.getExchangeId() + ":" + testData3.getInstrumentId()));
+            assertArrayEquals(new int[]{20240115}, service.getHistory("SZ", "159206", null, null).getDates());
+        } finally {
+            ReflectionTestUtils.setField(historyIndex, "maxInstruments", maxInstruments);
+            historyIndex.invalidateAll();
+        }
+    }
+
+    /**
+     * 测试按月聚合和LTTB降采样
+     */
+    @Test
+    void testHistoryDownsampling() {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone(TradingDates.EXCHANGE_ZONE));
+        cal.setTime(testData1.getTargetDate());
+        for (int i = 0; i < 40; i++) {
+            StockAnalysisResult row = new StockAnalysisResult();
+            row.setExchangeId("SZ");
+            row.setInstrumentId("159206");
+            row.setClose(1.0 + i);
+            row.setScore(50.0 + i);
+            row.setRanking(40 - i);
+            row.setTargetDate(cal.getTime());
+            service.save(row);
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        List<StockAnalysisResult> range = service.findByExchangeIdAndInstrumentIdAndTargetDateRange(
+                "SZ", "159206", testData1.getTargetDate(), testData3.getTargetDate());
+        assertEquals(3, range.size());
+        assertEquals(testData3.getTargetDate(), range.get(2).getTargetDate());
+        assertEquals(3, service.findByTargetDateRange(testData1.getTargetDate(), testData3.getTargetDate()).size());
+
+        InstrumentHistory monthly = service.getHistory("SZ", "159206", null, null,
+                HistoryDownsampler.Interval.MONTH, null);
+        assertArrayEquals(new int[]{20240131, 20240223}, monthly.getDates());
+        assertEquals(17.0, monthly.getClose()[0], 1e-9);
+        assertEquals(58.0, monthly.getScore()[0], 1e-9);
+        assertEquals(24, monthly.getRanking()[0]);
+
+        InstrumentHistory sampled = service.getHistory("SZ", "159206", null, null,
+                HistoryDownsampler.Interval.DAY, 10);
+        assertEquals(10, sampled.getDates().length);
+        assertEquals(20240115, sampled.getDates()[0]);
+        assertEquals(20240223, sampled.getDates()[9]);
+    }
+
+    /**
+     * 测试批量获取多个合约的历史
+     */
+    @Test
+    void testGetHistories() {
+        service.save(testData1);
+        service.save(testData2);
+        service.save(testData3);
+
+        List<InstrumentHistory> histories = service.getHistories(List.of(
+                new InstrumentKey("SH", "510300"), new InstrumentKey("SZ", "159206"), new InstrumentKey("SH", "000000")),
+                testData2.getTargetDate(), null, HistoryDownsampler.Interval.DAY, null);
+        assertEquals(3, histories.size());
+        assertEquals("510300", histories.get(0).getInstrumentId());
+        assertArrayEquals(new int[]{20240117}, histories.get(0).getDates());
+        assertArrayEquals(new int[]{20240116}, histories.get(1).getDates());
+        assertEquals(0, histories.get(2).getDates().length);
+    }
+
+    /**
+     * 测试均线计算
+     */
+    @Test
+    void testIndicators() {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone(TradingDates.EXCHANGE_ZONE));
+        cal.setTime(testData1.getTargetDate());
+        for (int i = 1; i <= 5; i++) {
+            StockAnalysisResult row = new StockAnalysisResult();
+            row.setExchangeId("SZ");
+            row.setInstrumentId("159206");
+            row.setInstrumentName("卫星ETF");
+            row.setClose((double) i);
+            row.setTargetDate(cal.getTime());
+            service.save(row);
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        IndicatorSeries series = indicatorService.getIndicators("SZ", "159206", null, null);
+        assertEquals(5, series.getDates().length);
+        assertTrue(Double.isNaN(series.getMa5()[3]));
+        assertEquals(3.0, series.getMa5()[4], 1e-9);
+        assertEquals(3.0, series.getLatest().getMa5(), 1e-9);
+        assertTrue(series.getLatest().isAboveMa5());
+        assertNull(series.getLatest().getMa20());
+        assertFalse(series.getLatest().isBullish());
+    }
+
+    /**
+     * 测试键集分页和字段投影
+     */
+    @Test
+    void testFindPage() {
+        service.save(testData1);
+        service.save(testData2);
+        service.save(testData3);
+        // 未回填tradeDate的行不参与分页
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(StockAnalysisResult.class))
+                .insertOne(new Document("_id", "SZ:000001:legacy").append("exchangeId", "SZ")
+                        .append("instrumentId", "000001").append("score", 50.0));
+
+        CursorPage first = service.findPage(null, 2, List.of("instrumentId", "score"));
+        assertEquals(2, first.getItems().size());
+        assertNotNull(first.getNextCursor());
+        assertEquals(List.of("instrumentId", "score"), List.copyOf(first.getItems().get(0).keySet()));
+
+        CursorPage second = service.findPage(first.getNextCursor(), 2, List.of("instrumentId", "score"));
+        assertEquals(1, second.getItems().size());
+        assertNull(second.getNextCursor());
+        assertEquals("510300", second.getItems().get(0).get("instrumentId"));
+
+        List<Object> instrumentIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage page = service.findPage(cursor, 1, List.of("instrumentId"));
+            page.getItems().forEach(item -> instrumentIds.add(item.get("instrumentId")));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(List.of("159206", "159206", "510300"), instrumentIds);
+    }
+
+    /**
+     * 测试CSV流式导出
+     */
+    @Test
+    void testExportCsv() throws IOException {
+        service.save(testData1);
+        service.save(testData2);
+        service.save(testData3);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = service.export(out, StockAnalysisExporter.Format.CSV, null, null, "SZ",
+                List.of("instrumentId", "score", "targetDate"));
+        assertEquals(2, count);
+        assertEquals("instrumentId,score,targetDate\n159206,85.5,2024-01-15\n159206,88.0,2024-01-16\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 测试组合查询：多个条件同时生效，并由数据库排序和截取
+     */
+    @Test
+    void testSearchCombinedCriteria() {
+        service.save(testData1);
+        service.save(testData2);
+        service.save(testData3);
+
+        StockAnalysisQuery query = new StockAnalysisQuery();
+        query.setExchangeId("SZ");
+        query.setMinRanking(8);
+        query.setMaxRanking(10);
+        query.setName("卫星");
+        query.setSort("-score");
+        List<Map<String, Object>> results = service.search(query, List.of("ranking", "score"));
+        assertEquals(2, results.size());
+        assertEquals(88.0, results.get(0).get("score"));
+
+        query.setLimit(1);
+        query.setMinAmount(1100000.0);
+        results = service.search(query, List.of("ranking"));
+        assertEquals(1, results.size());
+        assertEquals(8, results.get(0).get("ranking"));
+
+        // 未指定sort和limit时按键集分页，不截断结果
+        StockAnalysisQuery filter = new StockAnalysisQuery();
+        filter.setMinRanking(1);
+        filter.setMaxRanking(10);
+        CursorPage first = service.findPage(filter, null, 1, List.of("ranking"));
+        assertEquals(List.of(10), first.getItems().stream().map(item -> item.get("ranking")).toList());
+        assertNotNull(first.getNextCursor());
+        CursorPage second = service.findPage(filter, first.getNextCursor(), 1, List.of("ranking"));
+        assertEquals(List.of(8), second.getItems().stream().map(item -> item.get("ranking")).toList());
+        CursorPage third = service.findPage(filter, second.getNextCursor(), 1, List.of("ranking"));
+        assertEquals(List.of(5), third.getItems().stream().map(item -> item.get("ranking")).toList());
+        assertNull(third.getNextCursor());
+    }
+
+    /**
+     * 测试代码前缀和名称子串联想，以及新合约的增量索引
+     */
+    @Test
+    void testSuggest() {
+        service.save(testData1);
+        service.save(testData3);
+
+        List<InstrumentSuggestion> suggestions = service.suggest("1592", 10);
+        assertEquals(1, suggestions.size());
+        assertEquals("159206", suggestions.get(0).getInstrumentId());
+        assertEquals("510300", service.suggest("沪深", 10).get(0).getInstrumentId());
+        assertEquals(2, service.suggest("etf", 10).size());
+
+        StockAnalysisResult newInstrument = new StockAnalysisResult();
+        newInstrument.setExchangeId("SH");
+        newInstrument.setInstrumentId("512480");
+        newInstrument.setInstrumentName("半导体ETF");
+        newInstrument.setTargetDate(testData1.getTargetDate());
+        service.save(newInstrument);
+        suggestions = service.suggest("半导", 10);
+        assertEquals(1, suggestions.size());
+        assertEquals("512480", suggestions.get(0).getInstrumentId());
+    }
+
+    /**
+     * 测试按score重算排名和变化量
+     */
+    @Test
+    void testRecomputeRankings() {
+        service.save(testData1);
+        service.save(testData2);
+        StockAnalysisResult other = new StockAnalysisResult();
+        other.setExchangeId("SH");
+        other.setInstrumentId("510300");
+        other.setScore(95.0);
+        other.setTargetDate(testData2.getTargetDate());
+        service.save(other);
+
+        RankingRunResult result = service.recomputeRankings(testData2.getTargetDate());
+        assertEquals(2, result.getRows());
+
+        StockAnalysisResult recomputed = service.findByExchangeIdAndInstrumentIdAndTargetDate(
+                "SZ", "159206", testData2.getTargetDate()).orElseThrow();
+        assertEquals(2, recomputed.getRanking());
+        assertEquals(-1, recomputed.getRankingChange());
+        assertEquals(2.5, recomputed.getScoreChange(), 1e-9);
+        StockAnalysisResult top = service.findByExchangeIdAndInstrumentIdAndTargetDate(
+                "SH", "510300", testData2.getTargetDate()).orElseThrow();
+        assertEquals(1, top.getRanking());
+        assertNull(top.getRankingChange());
+
+        result = service.backfillRankings(null, null);
+        assertEquals(2, result.getDays());
+        assertEquals(3, result.getRows());
+    }
+
+    /**
+     * 测试横截面统计及写入后重新计算
+     */
+    @Test
+    void testAnalytics() {
+        service.save(testData2);
+        testData3.setTargetDate(testData2.getTargetDate());
+        service.save(testData3);
+
+        DailyAnalytics analytics = service.getAnalytics(testData2.getTargetDate(), 1);
+        assertEquals(2, analytics.getCount());
+        assertEquals(1, analytics.getTopByScore().size());
+        assertEquals("510300", analytics.getTopByScore().get(0).getInstrumentId());
+        assertEquals(90.0, analytics.getScoreStats().getPercentiles().get("p50"), 1e-9);
+        assertEquals("510300", analytics.getTopRankingGainers().get(0).getInstrumentId());
+        assertEquals("159206", analytics.getTopRankingLosers().get(0).getInstrumentId());
+        assertEquals(2, analytics.getExchanges().size());
+
+        testData2.setScore(99.0);
+        service.saveOrUpdate(testData2);
+        analytics = service.getAnalytics(testData2.getTargetDate(), 1);
+        assertEquals("159206", analytics.getTopByScore().get(0).getInstrumentId());
+    }
+
+    /**
+     * 测试由自然键生成的_id及旧ObjectId文档的迁移
+     */
+    @Test
+    void testNaturalIdAndMigration() {
+        StockAnalysisResult saved = service.saveOrUpdate(testData1);
+        assertEquals("SZ:159206:20240115", saved.getId());
+
+        testData1.setId(null);
+        testData1.setScore(90.0);
+        service.saveOrUpdate(testData1);
+        assertEquals(1, service.findAll().size());
+        assertEquals(90.0, service.findById("SZ:159206:20240115").get().getScore());
+
+        Document legacy = new Document("_id", new ObjectId())
+                .append("exchange_id", "SH")
+                .append("instrument_id", "510300")
+                .append("score", 92.0)
+                .append("target_date", testData3.getTargetDate());
+        mongoTemplate.getCollection("stock_analysis_result").insertOne(legacy);
+        // 旧版本为非零点的targetDate生成的带时刻后缀的_id
+        Document timeSuffixed = new Document("_id", "SZ:159206:20240116T150000000")
+                .append("exchange_id", "SZ")
+                .append("instrument_id", "159206")
+                .append("score", 70.0)
+                .append("target_date", testData2.getTargetDate());
+        mongoTemplate.getCollection("stock_analysis_result").insertOne(timeSuffixed);
+
+        assertEquals(2, stockAnalysisIdMigration.migrate());
+        assertEquals(92.0, service.findByExchangeIdAndInstrumentIdAndTargetDate(
+                "SH", "510300", testData3.getTargetDate()).get().getScore());
+        assertEquals(70.0, service.findById("SZ:159206:20240116").get().getScore());
+        assertEquals(0, stockAnalysisIdMigration.migrate());
+        assertEquals(3, service.findAll().size());
+    }
+
+    /**
+     * 测试交易日整数字段：写入时填充，同一交易日不同时刻的记录写入同一行，旧文档可回填
+     */
+    @Test
+    void testTradeDate() {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone(TradingDates.EXCHANGE_ZONE));
+        cal.setTime(testData1.getTargetDate());
+        cal.set(Calendar.HOUR_OF_DAY, 15);
+        testData2.setTargetDate(cal.getTime());
+        service.save(testData1);
+        service.save(testData2);
+
+        assertEquals(20240115, testData1.getTradeDate());
+        assertEquals("SZ:159206:20240115", testData2.getId());
+        assertEquals(1, service.findByTargetDate(testData1.getTargetDate()).size());
+        assertEquals(88.0, service.findByTargetDate(testData1.getTargetDate()).get(0).getScore());
+        assertEquals(1, service.findByTargetDateRange(testData1.getTargetDate(), testData1.getTargetDate()).size());
+
+        mongoTemplate.getCollection("stock_analysis_result").insertOne(new Document("_id", "legacy")
+                .append("exchange_id", "SH")
+                .append("instrument_id", "510300")
+                .append("target_date", testData3.getTargetDate()));
+        assertEquals(1, stockAnalysisTradeDateBackfill.backfill());
+        assertEquals(20240117, service.findById("legacy").get().getTradeDate());
+        assertEquals(0, stockAnalysisTradeDateBackfill.backfill());
+    }
+
+    /**
+     * 测试异步写入：同一键的重复提交被合并，写入后批次完成
+     */
+    @Test
+    void testIngestCoalescing() {
+        StockAnalysisResult newer = new StockAnalysisResult();
+        newer.setExchangeId("SZ");
+        newer.setInstrumentId("159206");
+        newer.setScore(99.0);
+        newer.setTargetDate(testData1.getTargetDate());
+
+        IngestBatchStatus status = ingestService.submit(
+                List.of(testData1, testData2, newer, new StockAnalysisResult()));
+        assertNotNull(status);
+        assertEquals(1, status.getCoalesced());
+        assertEquals(1, status.getFailed());
+
+        ingestService.flush();
+
+        status = ingestService.getStatus(status.getBatchId());
+        assertEquals(IngestBatchStatus.State.COMPLETED, status.getState());
+        assertEquals(2, status.getWritten());
+        assertEquals(0, ingestService.getPendingCount());
+        assertEquals(99.0, service.findById("SZ:159206:20240115").get().getScore());
+        assertEquals(2, service.findAll().size());
+    }
+
+    /**
+     * 测试staged发布模式：新交易日提交前/latest仍返回已发布的交易日
+     */
+    @Test
+    void testStagedPublish() {
+        ReflectionTestUtils.setField(tradingDayPublisher, "mode", "staged");
+        try {
+            service.deleteAll();
+            service.save(testData1);
+            assertNull(service.findLatestDate());
+
+            service.commitDay(testData1.getTargetDate());
+            assertEquals(testData1.getTargetDate(), service.findLatestDate());
+
+            service.save(testData2);
+            LatestSnapshotCache.Snapshot snapshot = service.getLatestSnapshot();
+            assertEquals(testData1.getTargetDate(), snapshot.getTargetDate());
+            assertEquals(1, snapshot.getRows().size());
+
+            service.commitDay(testData2.getTargetDate());
+            assertEquals(testData2.getTargetDate(), service.findLatestDate());
+            assertThrows(IllegalArgumentException.class, () -> service.commitDay(new Date(0)));
+        } finally {
+            ReflectionTestUtils.setField(tradingDayPublisher, "mode", "auto");
+            service.deleteAll();
+        }
+        assertThrows(IllegalStateException.class, () -> service.commitDay(testData1.getTargetDate()));
+    }
+
+    /**
+     * 测试SSE推送的快照差异：只包含变化的字段，新增和删除的行单独标出
+     */
+    @Test
+    void testSnapshotDiff() {
+        StockAnalysisResult changed = new StockAnalysisResult();
+        changed.setExchangeId("SZ");
+        changed.setInstrumentId("159206");
+        changed.setScore(testData1.getScore() + 1);
+        changed.setRanking(testData1.getRanking());
+        changed.setScoreChange(testData1.getScoreChange());
+        changed.setRankingChange(testData1.getRankingChange());
+        StockAnalysisResult added = new StockAnalysisResult();
+        added.setExchangeId("SH");
+        added.setInstrumentId("600000");
+        added.setScore(50.0);
+        added.setRanking(20);
+
+        List<SnapshotDiff.RowChange> changes = SnapshotEventBroadcaster.diff(
+                List.of(testData1, testData3), List.of(changed, added));
+        assertEquals(3, changes.size());
+
+        SnapshotDiff.RowChange scoreOnly = changes.get(0);
+        assertEquals("159206", scoreOnly.getInstrumentId());
+        assertEquals(changed.getScore(), scoreOnly.getScore());
+        assertNull(scoreOnly.getRanking());
+        assertNull(scoreOnly.getRemoved());
+        assertEquals(List.of("score"), scoreOnly.getChanged());
+
+        assertEquals("600000", changes.get(1).getInstrumentId());
+        assertEquals(20, changes.get(1).getRanking());
+        assertEquals(List.of("score", "ranking", "scoreChange", "rankingChange"), changes.get(1).getChanged());
+
+        assertEquals("510300", changes.get(2).getInstrumentId());
+        assertTrue(changes.get(2).getRemoved());
+
+        assertTrue(SnapshotEventBroadcaster.diff(List.of(testData1), List.of(testData1)).isEmpty());
+
+        // 变为null的字段通过changed表达
+        changed.setScore(testData1.getScore());
+        changed.setScoreChange(null);
+        SnapshotDiff.RowChange cleared = SnapshotEventBroadcaster.diff(List.of(testData1), List.of(changed)).get(0);
+        assertEquals(List.of("scoreChange"), cleared.getChanged());
+        assertNull(cleared.getScoreChange());
+    }
+
+    /**
+     * 测试后台线程工厂：虚拟线程模式下创建虚拟线程，否则创建daemon平台线程
+     */
+    @Test
+    void testThreadFactories() {
+        Thread virtual = ThreadFactories.named("test", true).newThread(() -> { });
+        assertTrue(virtual.isVirtual());
+        assertEquals("test-0", virtual.getName());
+
+        Thread platform = ThreadFactories.named("test", false).newThread(() -> { });
+        assertFalse(platform.isVirtual());
+        assertTrue(platform.isDaemon());
+    }
+
+    /**
+     * 测试响应式读取：结果与阻塞路径一致
+     */
+    @Test
+    void testReactiveReads() {
+        service.save(testData1);
+        service.save(testData2);
+        service.save(testData3);
+
+        List<StockAnalysisResult> latest = reactiveService.findLatest().collectList().block();
+        assertEquals(1, latest.size());
+        assertEquals("510300", latest.get(0).getInstrumentId());
+
+        List<StockAnalysisResult> history = reactiveService.findHistory("SZ", "159206", null, null)
+                .collectList().block();
+        assertEquals(2, history.size());
+        assertEquals(testData1.getTargetDate(), history.get(0).getTargetDate());
+
+        StockAnalysisQuery query = new StockAnalysisQuery();
+        query.setMinScore(86.0);
+        query.setSort("-score");
+        List<Map<String, Object>> items = reactiveService.search(query, List.of("instrumentId", "score"))
+                .collectList().block();
+        assertEquals(List.of(92.0, 88.0), items.stream().map(item -> item.get("score")).toList());
+        assertThrows(IllegalArgumentException.class, () -> {
+            query.setSort("unknown");
+            reactiveService.search(query, List.of());
+        });
+    }
+
+    /**
+     * 测试数据路径指标：缓存命中计数、Repository方法耗时、MongoDB返回文档数和取连接等待、写入队列深度
+     */
+    @Test
+    void testDataPathMetrics() {
+        service.save(testData1);
+        double before = cacheGets("latest-snapshot", "hit") + cacheGets("latest-snapshot", "miss");
+        service.getLatestSnapshot();
+        service.getLatestSnapshot();
+        assertTrue(cacheGets("latest-snapshot", "hit") + cacheGets("latest-snapshot", "miss") >= before + 2);
+        assertTrue(cacheGets("latest-snapshot", "hit") >= 1);
+
+        service.findByExchangeIdAndInstrumentId("SZ", "159206");
+        assertFalse(meterRegistry.find("spring.data.repository.invocations")
+                .tag("repository", "StockAnalysisResultRepository").timers().isEmpty());
+        assertTrue(meterRegistry.get("qtfund.mongodb.returned").tag("command", "find")
+                .tag("collection", "stock_analysis_result").summary().count() > 0);
+        assertTrue(meterRegistry.get("qtfund.mongodb.pool.checkout").tag("outcome", "success").timer().count() > 0);
+
+        ingestService.flush();
+        assertEquals(0.0, meterRegistry.get("qtfund.ingest.queue.depth").gauge().value());
+    }
+
+    private double cacheGets(String cache, String result) {
+        Counter counter = meterRegistry.find("cache.gets").tag("cache", cache).tag("result", result).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
     /**
      * 测试完整的CRUD流程
      */
@@ -338,7 +1020,7 @@ class QtFundApplicationTests {
     @Test
     void testSaveDataForViewing() {
         // 创建测试数据
-        Calendar cal = Calendar.getInstance();
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone(TradingDates.EXCHANGE_ZONE));
         cal.set(2024, Calendar.JANUARY, 20, 0, 0, 0);
         cal.set(Calendar.MILLISECOND, 0);
         Date testDate = cal.getTime();
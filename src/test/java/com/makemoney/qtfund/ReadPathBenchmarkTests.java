@@ -0,0 +1,200 @@
+package com.makemoney.qtfund;
+
+import com.makemoney.qtfund.entity.StockAnalysisResult;
+import com.makemoney.qtfund.service.ReactiveStockAnalysisResultService;
+import com.makemoney.qtfund.service.StockAnalysisResultService;
+import com.makemoney.qtfund.util.TradingDates;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 阻塞读取与响应式读取在高并发下的对比
+ * 默认不执行，使用 mvn test -Pbenchmark 运行；结果输出到控制台和 target/benchmark/read-path.csv
+ * 可用系统属性调整：benchmark.instruments、benchmark.days、benchmark.requests、benchmark.concurrency（逗号分隔）
+ * 并发超过连接池大小时，取连接的等待计入延迟，因此放宽连接池等待时间，避免超时失败
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "qtfund.mongo.pool.max-wait-ms=600000")
+class ReadPathBenchmarkTests {
+
+    private static final String EXCHANGE_ID = "BM";
+
+    @Autowired
+    private StockAnalysisResultService service;
+
+    @Autowired
+    private ReactiveStockAnalysisResultService reactiveService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final int instruments = Integer.getInteger("benchmark.instruments", 100);
+
+    private final int days = Integer.getInteger("benchmark.days", 120);
+
+    private final int requests = Integer.getInteger("benchmark.requests", 5000);
+
+    private final int[] concurrencyLevels = Arrays.stream(System.getProperty("benchmark.concurrency", "16,128,1024")
+            .split(",")).mapToInt(level -> Integer.parseInt(level.trim())).toArray();
+
+    private Date from;
+
+    private Date to;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        List<StockAnalysisResult> rows = new ArrayList<>(instruments * days);
+        for (int day = 0; day < days; day++) {
+            Date targetDate = Date.from(start.plusDays(day).atStartOfDay(TradingDates.EXCHANGE_ZONE).toInstant());
+            for (int i = 0; i < instruments; i++) {
+                StockAnalysisResult row = new StockAnalysisResult();
+                row.setExchangeId(EXCHANGE_ID);
+                row.setInstrumentId(instrumentId(i));
+                row.setInstrumentName("BENCH" + i);
+                row.setTargetDate(targetDate);
+                row.setClose(1.0 + day * 0.01);
+                row.setAmount(1_000_000.0 + i);
+                row.setScore((double) ((i * 31 + day) % 100));
+                row.setRanking(i + 1);
+                rows.add(row);
+            }
+        }
+        service.saveOrUpdateAll(rows);
+        from = Date.from(start.atStartOfDay(TradingDates.EXCHANGE_ZONE).toInstant());
+        to = Date.from(start.plusDays(days - 1).atStartOfDay(TradingDates.EXCHANGE_ZONE).toInstant());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        mongoTemplate.remove(Query.query(Criteria.where("exchangeId").is(EXCHANGE_ID)), StockAnalysisResult.class);
+    }
+
+    @Test
+    void compareBlockingAndReactiveHistoryReads() throws Exception {
+        // 预热两条路径
+        runBlocking(16, Math.min(requests, 500));
+        runReactive(16, Math.min(requests, 500));
+
+        List<String> lines = new ArrayList<>();
+        lines.add("path,concurrency,requests,throughput_per_s,p50_ms,p99_ms,max_ms");
+        for (int concurrency : concurrencyLevels) {
+            Result blocking = runBlocking(concurrency, requests);
+            Result reactive = runReactive(concurrency, requests);
+            assertEquals((long) requests * days, blocking.rows);
+            assertEquals((long) requests * days, reactive.rows);
+            lines.add(blocking.toCsv("blocking", concurrency));
+            lines.add(reactive.toCsv("reactive", concurrency));
+        }
+
+        Path output = Path.of("target", "benchmark", "read-path.csv");
+        Files.createDirectories(output.getParent());
+        Files.write(output, lines);
+        lines.forEach(System.out::println);
+    }
+
+    /**
+     * 阻塞路径：每个并发占用一个平台线程，同步驱动等待数据库返回
+     */
+    private Result runBlocking(int concurrency, int count) throws Exception {
+        long[] latencies = new long[count];
+        AtomicLong rows = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long started = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                futures.add(pool.submit(() -> {
+                    long begin = System.nanoTime();
+                    List<StockAnalysisResult> history = service.findByExchangeIdAndInstrumentIdAndTargetDateRange(
+                            EXCHANGE_ID, instrumentId(index % instruments), from, to);
+                    latencies[index] = System.nanoTime() - begin;
+                    rows.addAndGet(history.size());
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return new Result(latencies, rows.get(), System.nanoTime() - started);
+    }
+
+    /**
+     * 响应式路径：flatMap限制同时进行的查询数，不为每个并发占用线程
+     */
+    private Result runReactive(int concurrency, int count) {
+        long[] latencies = new long[count];
+        AtomicLong rows = new AtomicLong();
+        long started = System.nanoTime();
+        Flux.range(0, count)
+                .flatMap(index -> Mono.defer(() -> {
+                    long begin = System.nanoTime();
+                    return reactiveService.findHistory(EXCHANGE_ID, instrumentId(index % instruments), from, to)
+                            .count()
+                            .doOnNext(size -> {
+                                latencies[index] = System.nanoTime() - begin;
+                                rows.addAndGet(size);
+                            });
+                }), concurrency)
+                .blockLast();
+        return new Result(latencies, rows.get(), System.nanoTime() - started);
+    }
+
+    private static String instrumentId(int index) {
+        return String.format("%06d", index);
+    }
+
+    private static final class Result {
+
+        private final long[] latencies;
+
+        private final long rows;
+
+        private final long elapsedNanos;
+
+        private Result(long[] latencies, long rows, long elapsedNanos) {
+            this.latencies = latencies.clone();
+            Arrays.sort(this.latencies);
+            this.rows = rows;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private double percentileMillis(double percentile) {
+            int index = (int) Math.ceil(percentile * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / 1_000_000.0;
+        }
+
+        private String toCsv(String path, int concurrency) {
+            double throughput = latencies.length / (elapsedNanos / 1_000_000_000.0);
+            return String.format("%s,%d,%d,%.1f,%.2f,%.2f,%.2f", path, concurrency, latencies.length, throughput,
+                    percentileMillis(0.50), percentileMillis(0.99), percentileMillis(1.0));
+        }
+    }
+}